@@ -1,13 +1,18 @@
 package com.logicnow.comparison;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import javax.json.JsonArray;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 
 public class ComparatorConfig {
 
@@ -26,46 +31,62 @@ public class ComparatorConfig {
 	private String startDate;
 	private String endDate;
 
-	private JsonObject config;
+	private final JsonObject config;
+	// parsed once, the getters are called for every file and row filter
+	private final String[] columns;
+	private final Map<String, String> columnTypes;
+	private final List<String[]> includeFilters;
+	private final List<String[]> excludeFilters;
 	
 	public ComparatorConfig(JsonObject config) {
 		this.config = config;
+		this.columns = toStringArray(config.getJsonArray(COLS));
+		this.columnTypes = Collections.unmodifiableMap(toStringMap(config.getJsonObject(COL_TYPES)));
+		this.includeFilters = Collections.unmodifiableList(getFilters(true));
+		this.excludeFilters = Collections.unmodifiableList(getFilters(false));
 	}
 	
 	public String getIDColumn() {
-		return config.getString(ID);
+		return config.getString(ID, null);
 	}
 
 	public Map<String, String> getColumnTypes() {
-		return toStringMap(config.getJsonObject(COL_TYPES));
+		return columnTypes;
 	}
 
 	public String[] getColumns() {
-		return toStringArray(config.getJsonArray(COLS));
+		return columns.clone();
 	}
 	
 	public String getIsValidColumn() {
-		return config.getString(VALID);
+		return config.getString(VALID, null);
 	}
 
 	public String getTenantColumn() {
-		return config.getString(TENANT);
+		return config.getString(TENANT, null);
 	}
 
 	public String getProductColumn() {
-		return config.getString(PRODUCT);
+		return config.getString(PRODUCT, null);
 	}
 	
 	public String getShortProduct() {
-		return config.getString(SHORT_PRODUCT);
+		return config.getString(SHORT_PRODUCT, null);
 	}
 
 	public List<String[]> getIncludeFilters() {
-		return getFilters(true);
+		return includeFilters;
 	}
 	
 	public List<String[]> getExcludeFilters() {
-		return getFilters(false);
+		return excludeFilters;
+	}
+
+	/**
+	 * Hash of the config and its dates, equal for configs that filter the same rows.
+	 */
+	public String getHash() {
+		return Hashing.sha256().hashString(config.toString() + "|" + startDate + "|" + endDate, StandardCharsets.UTF_8).toString();
 	}
 	
 	private List<String[]> getFilters(boolean include) {
@@ -103,11 +124,8 @@ public class ComparatorConfig {
 	private Map<String, String> toStringMap(JsonObject obj) {
 		Map<String, String> map = Maps.newHashMap();
 		if (obj != null) {
-			for (int i = 0; i < obj.size(); i++) {
-				for (String key : obj.keySet()) {
-					String value = obj.getString(key);
-					map.put(key, value);
-				}
+			for (String key : obj.keySet()) {
+				map.put(key, obj.getString(key));
 			}
 		}
 		return map;
@@ -116,11 +134,29 @@ public class ComparatorConfig {
 	private List<String[]> toListStringArray(JsonArray arr) {
 		List<String[]> items = Lists.newArrayList();
 		for (int i = 0; i < arr.size(); i++) {
-			items.add(toStringArray(arr.getJsonArray(i)));
+			items.add(toFilter(arr.getJsonArray(i)));
 		}
 		return items;
 	}
 
+	/** A filter's list of values is flattened after its column and operand */
+	private String[] toFilter(JsonArray arr) {
+		List<String> items = Lists.newArrayList();
+		for (int i = 0; i < arr.size(); i++) {
+			if (arr.get(i).getValueType() == JsonValue.ValueType.ARRAY) {
+				items.addAll(Arrays.asList(toStringArray(arr.getJsonArray(i))));
+			} else {
+				items.add(arr.getString(i));
+			}
+		}
+		return (String[])items.toArray(new String[items.size()]);
+	}
+
+	private static String toOperand(String[] filter) {
+		if (filter.length == 3) return filter[2];
+		return Arrays.toString(Arrays.copyOfRange(filter, 2, filter.length));
+	}
+
 	public String getStartDate() { return startDate; }
 	public void setStartDate(String startDate) { this.startDate = startDate; }
 
@@ -130,19 +166,19 @@ public class ComparatorConfig {
 	public String asString() { return asString(NL); }
 	
 	public String asString(String separator) {
-		StringBuilder buffy = new StringBuilder();
-		boolean first = true;
+		return String.join(separator, getFilterDescriptions());
+	}
+
+	/** Description of each filter, the include filters first */
+	public List<String> getFilterDescriptions() {
+		List<String> descriptions = Lists.newArrayList();
 		for (String[] filter : this.getIncludeFilters()) {
-			if (!first) buffy.append(separator);
-			else first = false;
-			buffy.append("include: '").append(filter[0]).append("' ").append(filter[1]).append(" '").append(filter[2]).append("'");
+			descriptions.add("include: '" + filter[0] + "' " + filter[1] + " '" + toOperand(filter) + "'");
 		}
 		for (String[] filter : this.getExcludeFilters()) {
-			if (!first) buffy.append(separator);
-			else first = false;
-			buffy.append("exclude: '").append(filter[0]).append("' ").append(filter[1]).append(" '").append(filter[2]).append("'");
+			descriptions.add("exclude: '" + filter[0] + "' " + filter[1] + " '" + toOperand(filter) + "'");
 		}
-		return buffy.toString();
+		return descriptions;
 	}
 	
 }
@@ -0,0 +1,133 @@
+package com.logicnow.comparison;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.logicnow.comparison.data.ColumnType;
+import com.logicnow.comparison.filter.FilterPredicate;
+import com.logicnow.comparison.utils.CompUtils;
+
+/**
+ * A config compiled against the header of a source file: the config's columns
+ * are resolved to header positions, coltypes are typed and filters compiled once.
+ * Plans are immutable and cached by the config's hash and the header's signature,
+ * so each distinct config and file layout is validated and compiled once. The
+ * cache is bounded, so a long-lived process drops the plans of earlier runs. A config
+ * naming a column the header does not have fails when it is compiled.
+ */
+public class ExecutionPlan {
+
+	/** Plans kept, a run compiles a few per config and the dates change the config hash daily */
+	public static final int MAX_CACHED_PLANS = 128;
+
+	private static final Cache<String, ExecutionPlan> CACHE = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PLANS).build();
+
+	private final String[] columns;
+	private final int[] projection;
+	private final Map<String, ColumnType> columnTypes;
+	private final int idColumn;
+	private final int tenantColumn;
+	private final int validColumn;
+	private final int productColumn;
+	private final FilterPredicate[] includeFilters;
+	private final FilterPredicate[] excludeFilters;
+	private final int[] includeColumns;
+	private final int[] excludeColumns;
+
+	private ExecutionPlan(ComparatorConfig config, String[] headers, String[] keptColumns) {
+		columns = ArrayUtils.addAll(config.getColumns(), keptColumns);
+		projection = new int[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			projection[i] = ArrayUtils.indexOf(headers, columns[i]);
+			if (projection[i] == -1) {
+				throw new IllegalArgumentException("Column [" + columns[i] + "] of the " + config.getShortProduct() + " config is not in the source header");
+			}
+		}
+		columnTypes = Collections.unmodifiableMap(CompUtils.getColumnTypes(config));
+		idColumn = roleColumn(config, config.getIDColumn());
+		tenantColumn = roleColumn(config, config.getTenantColumn());
+		validColumn = roleColumn(config, config.getIsValidColumn());
+		productColumn = roleColumn(config, config.getProductColumn());
+		includeFilters = compile(config, config.getIncludeFilters());
+		excludeFilters = compile(config, config.getExcludeFilters());
+		includeColumns = filterColumns(includeFilters);
+		excludeColumns = filterColumns(excludeFilters);
+	}
+
+	/**
+	 * Plan of the config for a source with the given header, keeping the config's
+	 * columns and the kept columns. The config's dates must be set.
+	 */
+	public static ExecutionPlan compile(ComparatorConfig config, String[] headers, String... keptColumns) {
+		String key = config.getHash() + "|" + signature(headers) + "|" + Arrays.toString(keptColumns);
+		ExecutionPlan plan = CACHE.getIfPresent(key);
+		if (plan == null) {
+			plan = new ExecutionPlan(config, headers, keptColumns);
+			CACHE.put(key, plan);
+		}
+		return plan;
+	}
+
+	private static String signature(String[] headers) {
+		return Hashing.sha256().hashString(String.join("\u0000", headers), StandardCharsets.UTF_8).toString();
+	}
+
+	private int roleColumn(ComparatorConfig config, String column) {
+		if (column == null) return -1;
+		int index = ArrayUtils.indexOf(columns, column);
+		if (index == -1) {
+			throw new IllegalArgumentException("Column [" + column + "] of the " + config.getShortProduct() + " config is not in its columns");
+		}
+		return index;
+	}
+
+	private static FilterPredicate[] compile(ComparatorConfig config, List<String[]> filters) {
+		FilterPredicate[] predicates = new FilterPredicate[filters.size()];
+		for (int i = 0; i < predicates.length; i++) {
+			predicates[i] = FilterPredicate.compile(config, filters.get(i));
+		}
+		return predicates;
+	}
+
+	private int[] filterColumns(FilterPredicate[] filters) {
+		int[] indexes = new int[filters.length];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = ArrayUtils.indexOf(columns, filters[i].getColumn());
+			if (indexes[i] == -1) {
+				throw new RuntimeException("Filter column " + filters[i].getColumn() + " is not in the filtered columns");
+			}
+		}
+		return indexes;
+	}
+
+	/** Names of the projected columns */
+	public String[] getColumns() { return columns.clone(); }
+	/** Header positions of the projected columns */
+	public int[] getProjection() { return projection.clone(); }
+	public Map<String, ColumnType> getColumnTypes() { return columnTypes; }
+
+	// positions in the projected columns, -1 if the config does not name the column
+	public int getIDColumn() { return idColumn; }
+	public int getTenantColumn() { return tenantColumn; }
+	public int getValidColumn() { return validColumn; }
+	public int getProductColumn() { return productColumn; }
+
+	public int getIncludeCount() { return includeFilters.length; }
+	public FilterPredicate getIncludeFilter(int i) { return includeFilters[i]; }
+	/** Projected position of the include filter's column */
+	public int getIncludeColumn(int i) { return includeColumns[i]; }
+
+	public int getExcludeCount() { return excludeFilters.length; }
+	public FilterPredicate getExcludeFilter(int i) { return excludeFilters[i]; }
+	/** Projected position of the exclude filter's column */
+	public int getExcludeColumn(int i) { return excludeColumns[i]; }
+
+}
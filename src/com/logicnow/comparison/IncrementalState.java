@@ -0,0 +1,160 @@
+package com.logicnow.comparison;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.Dataset;
+import com.logicnow.comparison.data.DatasetSnapshot;
+import com.logicnow.comparison.data.IntColumn;
+import com.logicnow.comparison.data.StringColumn;
+
+/**
+ * State kept between month-to-date runs of the same month: the parsed source
+ * datasets with the fingerprint of each row, and the classification of every
+ * tenant of each product comparison. A run loads the previous state, parses only
+ * the source rows that are new or changed and reclassifies only the tenants those
+ * rows belong to.
+ */
+public class IncrementalState {
+
+	public static final String INCREMENTAL_PROP = "INCREMENTAL";
+
+	private static final String TENANT = "Tenant";
+	private static final String FLAGS = "Flags";
+	/** Flag of the stored null tenant, which is written as an empty string */
+	private static final int NULL_TENANT = 32;
+
+	private final File dir;
+	private final Map<String, DatasetSnapshot> sources = Maps.newLinkedHashMap();
+	private final Map<String, Map<String, Integer>> payloads = Maps.newLinkedHashMap();
+	private final StringBuilder sourcesKey = new StringBuilder();
+	private final StringBuilder previousSourcesKey = new StringBuilder();
+	private boolean previousComplete = true;
+
+	public IncrementalState(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * State directory of the month-to-date period starting at startDate.
+	 */
+	public static IncrementalState forPeriod(String startDate) {
+		return new IncrementalState(new File(ReportRunner.DIR_DATA + "state", startDate));
+	}
+
+	/**
+	 * Loads the previous state of a source file read with the given signature,
+	 * returns null if there is none.
+	 */
+	public DatasetSnapshot loadSource(String name, String signature) throws IOException {
+		DatasetSnapshot snapshot = DatasetSnapshot.read(new File(dir, name + DatasetSnapshot.SUFFIX), signature);
+		return snapshot != null && snapshot.getFingerprints() != null ? snapshot : null;
+	}
+
+	/**
+	 * Records the current state of a source file, written by {@link #save()}.
+	 * Classifications are keyed by the classified sources, so they are only reused
+	 * with the sources they were computed from.
+	 */
+	public synchronized void putSource(String name, String signature, Dataset data, long[] fingerprints, DatasetSnapshot previous, boolean classified) {
+		sources.put(name + "|" + signature, new DatasetSnapshot(data, fingerprints));
+		if (!classified) return;
+		sourcesKey.append('|').append(hash(fingerprints));
+		if (previous != null) previousSourcesKey.append('|').append(hash(previous.getFingerprints()));
+		else previousComplete = false;
+	}
+
+	/**
+	 * Key of the classified sources as they were when the previous state was saved,
+	 * null if any of them had no previous state.
+	 */
+	public synchronized String getPreviousSourcesKey() {
+		return previousComplete ? previousSourcesKey.toString() : null;
+	}
+
+	/**
+	 * Key of a comparison's classification, it changes with the config file and
+	 * with the dates the config's filters depend on.
+	 */
+	public static String payloadKey(String configPath, String startDate, String endDate) throws IOException {
+		File config = new File(configPath);
+		String key = Files.hash(config, Hashing.sha256()) + "|" + startDate;
+		if (Files.toString(config, StandardCharsets.UTF_8).contains("$END_DATE")) key += "|" + endDate;
+		return key;
+	}
+
+	/**
+	 * Loads the tenant flags a comparison stored for the previous sources, returns
+	 * null if there are none.
+	 */
+	public Map<String, Integer> loadPayload(String payloadKey) throws IOException {
+		String sourcesKey = getPreviousSourcesKey();
+		if (sourcesKey == null) return null;
+		DatasetSnapshot snapshot = DatasetSnapshot.read(getPayloadFile(payloadKey), payloadKey + sourcesKey);
+		if (snapshot == null) return null;
+		Dataset data = snapshot.getDataset();
+		Column tenants = data.getColumn(TENANT);
+		Column flags = data.getColumn(FLAGS);
+		Map<String, Integer> payload = Maps.newHashMapWithExpectedSize(data.size());
+		for (int row = 0; row < data.size(); row++) {
+			int flag = flags.getInt(row);
+			payload.put((flag & NULL_TENANT) != 0 ? null : tenants.getString(row), flag & ~NULL_TENANT);
+		}
+		return payload;
+	}
+
+	/**
+	 * Records the tenant flags of a comparison, written by {@link #save()}.
+	 */
+	public synchronized void putPayload(String payloadKey, ResultPayload payload) {
+		Map<String, Integer> flags = Maps.newLinkedHashMap();
+		for (String tenant : payload.getCombined()) {
+			flags.put(tenant, TenantClassification.flags(payload, tenant));
+		}
+		payloads.put(payloadKey, flags);
+	}
+
+	/**
+	 * Writes the recorded sources and classifications, replacing the previous state.
+	 */
+	public synchronized void save() throws IOException {
+		for (Map.Entry<String, DatasetSnapshot> source : sources.entrySet()) {
+			String name = source.getKey().substring(0, source.getKey().indexOf('|'));
+			String signature = source.getKey().substring(name.length() + 1);
+			DatasetSnapshot.write(new File(dir, name + DatasetSnapshot.SUFFIX), signature, source.getValue());
+		}
+		for (Map.Entry<String, Map<String, Integer>> payload : payloads.entrySet()) {
+			String[] tenants = new String[payload.getValue().size()];
+			int[] flags = new int[tenants.length];
+			int row = 0;
+			for (Map.Entry<String, Integer> tenant : payload.getValue().entrySet()) {
+				tenants[row] = tenant.getKey() != null ? tenant.getKey() : "";
+				flags[row] = tenant.getKey() != null ? tenant.getValue() : tenant.getValue() | NULL_TENANT;
+				row++;
+			}
+			Dataset data = new Dataset(new String[] { TENANT, FLAGS }, new Column[] { new StringColumn(tenants), IntColumn.of(flags) }, tenants.length);
+			DatasetSnapshot.write(getPayloadFile(payload.getKey()), payload.getKey() + sourcesKey, new DatasetSnapshot(data, null));
+		}
+	}
+
+	private File getPayloadFile(String payloadKey) {
+		// one file per config, named by the config's hash
+		return new File(dir, payloadKey.substring(0, payloadKey.indexOf('|')) + ".payload");
+	}
+
+	private static String hash(long[] fingerprints) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		for (long fingerprint : fingerprints) {
+			hasher.putLong(fingerprint);
+		}
+		return hasher.hash().toString();
+	}
+
+}
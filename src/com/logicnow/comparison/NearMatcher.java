@@ -0,0 +1,187 @@
+package com.logicnow.comparison;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.logicnow.comparison.utils.CompUtils;
+
+/**
+ * Pairs tenants found on one side only with tenants found on the other side only
+ * whose keys nearly match. Keys are normalized first: case and whitespace are
+ * ignored, the lead ID prefixes are stripped and ':' is read as '_'. Keys that are
+ * equal once normalized match, otherwise candidates are found through an index of
+ * the trigrams of the other side's keys and kept within a few edits, so keys are
+ * not compared pairwise. Only a key's rarest trigrams are looked up, as many as
+ * a match within the distance is sure to share one of.
+ */
+public class NearMatcher {
+
+	/** Largest edit distance between normalized keys reported as a near match */
+	public static final int MAX_DISTANCE = 2;
+
+	/** Key characters per edit allowed */
+	public static final int CHARS_PER_EDIT = 12;
+
+	private static final int GRAM = 3;
+	private static final String[] PREFIXES = { "salesforce:", "backup:", "rm:" };
+
+	public static class Match {
+		private final String match;
+		private final int distance;
+
+		Match(String match, int distance) {
+			this.match = match;
+			this.distance = distance;
+		}
+
+		/** The tenant on the other side */
+		public String getMatch() { return match; }
+		/** Edit distance of the normalized keys, 0 if they are equal */
+		public int getDistance() { return distance; }
+	}
+
+	private NearMatcher() { }
+
+	/**
+	 * The closest match of each left tenant among the right tenants and of each
+	 * right tenant among the left ones, by tenant. Ties go to the first tenant in
+	 * order, tenants without a match are left out.
+	 */
+	public static Map<String, Match> match(Set<String> left, Set<String> right) {
+		Map<String, Match> matches = Maps.newHashMap();
+		match(left, right, matches);
+		match(right, left, matches);
+		return matches;
+	}
+
+	private static void match(Set<String> tenants, Set<String> others, Map<String, Match> matches) {
+		List<String> candidates = Lists.newArrayList();
+		List<String> normalized = Lists.newArrayList();
+		for (String other : CompUtils.getSortedSet(others)) {
+			if (other == null) continue;
+			candidates.add(other);
+			normalized.add(normalize(other));
+		}
+		if (candidates.isEmpty()) return;
+		Map<String, Integer> exact = Maps.newHashMap();
+		Map<String, List<Integer>> index = Maps.newHashMap();
+		for (int i = 0; i < candidates.size(); i++) {
+			if (!exact.containsKey(normalized.get(i))) exact.put(normalized.get(i), i);
+			for (String gram : grams(normalized.get(i))) {
+				List<Integer> posting = index.get(gram);
+				if (posting == null) {
+					posting = Lists.newArrayList();
+					index.put(gram, posting);
+				}
+				posting.add(i);
+			}
+		}
+		boolean[] seen = new boolean[candidates.size()];
+		List<Integer> touched = Lists.newArrayList();
+		for (String tenant : tenants) {
+			if (tenant == null) continue;
+			String key = normalize(tenant);
+			Integer same = exact.get(key);
+			if (same != null) {
+				matches.put(tenant, new Match(candidates.get(same), 0));
+				continue;
+			}
+			int maxDistance = maxDistance(key);
+			if (maxDistance == 0) continue;
+			// a key within the distance shares at least one of any GRAM * maxDistance + 1 of
+			// its grams, so only the rarest are probed and common id prefixes are skipped
+			List<String> grams = Lists.newArrayList(grams(key));
+			Collections.sort(grams, Comparator.comparingInt(gram -> postingSize(index, gram)));
+			for (String gram : grams.subList(0, Math.min(grams.size(), GRAM * maxDistance + 1))) {
+				List<Integer> posting = index.get(gram);
+				if (posting == null) continue;
+				for (int i : posting) {
+					if (!seen[i]) {
+						seen[i] = true;
+						touched.add(i);
+					}
+				}
+			}
+			int best = -1;
+			int bestDistance = maxDistance + 1;
+			for (int i : touched) {
+				if (Math.abs(key.length() - normalized.get(i).length()) <= maxDistance) {
+					int distance = distance(key, normalized.get(i), Math.min(maxDistance, bestDistance));
+					if (distance < bestDistance || (distance == bestDistance && i < best)) {
+						best = i;
+						bestDistance = distance;
+					}
+				}
+				seen[i] = false;
+			}
+			touched.clear();
+			if (best != -1) matches.put(tenant, new Match(candidates.get(best), bestDistance));
+		}
+	}
+
+	private static int postingSize(Map<String, List<Integer>> index, String gram) {
+		List<Integer> posting = index.get(gram);
+		return posting != null ? posting.size() : 0;
+	}
+
+	/**
+	 * Edits allowed for the key, one per {@link #CHARS_PER_EDIT} characters up to
+	 * {@link #MAX_DISTANCE}: short keys differing by an edit are usually different
+	 * tenants, so those only match once normalized.
+	 */
+	static int maxDistance(String key) {
+		return Math.min(MAX_DISTANCE, key.length() / CHARS_PER_EDIT);
+	}
+
+	static String normalize(String tenant) {
+		String key = tenant.trim().toLowerCase().replaceAll("\\s+", "");
+		for (String prefix : PREFIXES) {
+			if (key.startsWith(prefix)) {
+				key = key.substring(prefix.length());
+				break;
+			}
+		}
+		return key.replace(':', '_');
+	}
+
+	private static Set<String> grams(String key) {
+		String padded = "\u0001" + key + "\u0001";
+		Set<String> grams = Sets.newHashSet();
+		for (int i = 0; i + GRAM <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + GRAM));
+		}
+		return grams;
+	}
+
+	/**
+	 * Levenshtein distance of the keys, or max + 1 once it is known to exceed max.
+	 */
+	static int distance(String a, String b, int max) {
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMin = current[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > max) return max + 1;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[b.length()], max + 1);
+	}
+
+}
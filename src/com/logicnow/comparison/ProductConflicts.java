@@ -0,0 +1,148 @@
+package com.logicnow.comparison;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Tenants classified under more than one product of a run. The payloads share the
+ * run's tenant dictionary, so the tenants in several payloads and the tenants a
+ * source has as valid under one product and invalid under another are found with
+ * bitmap operations over their result sets, and flags are only read back for the
+ * tenants reported.
+ */
+public class ProductConflicts {
+
+	public static class Conflict {
+		private final String tenant;
+		private final int[] flags;
+		private final boolean validityConflict;
+
+		Conflict(String tenant, int[] flags, boolean validityConflict) {
+			this.tenant = tenant;
+			this.flags = flags;
+			this.validityConflict = validityConflict;
+		}
+
+		public String getTenant() { return tenant; }
+		/** The tenant's {@link TenantClassification} flags by payload, 0 if the payload does not have it */
+		public int getFlags(int payload) { return flags[payload]; }
+		public boolean isValidityConflict() { return validityConflict; }
+	}
+
+	/** The flags in bit order, {@link TenantClassification#IN_AMARILLO} first */
+	private static final int[] FLAGS = { TenantClassification.IN_AMARILLO, TenantClassification.IN_SFDC,
+			TenantClassification.AMARILLO_VALID, TenantClassification.SFDC_VALID, TenantClassification.SFDC_DUPE };
+
+	private ProductConflicts() { }
+
+	/** Tenants in more than one of the payloads, in tenant order */
+	public static List<Conflict> find(ResultPayload... payloads) {
+		TenantDictionary dictionary = dictionary(payloads);
+		// per payload, the tenants with each flag
+		BitSet[][] flagged = new BitSet[payloads.length][];
+		BitSet seen = new BitSet(dictionary.size());
+		BitSet several = new BitSet(dictionary.size());
+		BitSet amarilloValid = new BitSet(dictionary.size());
+		BitSet amarilloInvalid = new BitSet(dictionary.size());
+		BitSet sfdcValid = new BitSet(dictionary.size());
+		BitSet sfdcInvalid = new BitSet(dictionary.size());
+		for (int p = 0; p < payloads.length; p++) {
+			ResultPayload payload = payloads[p];
+			BitSet combined = bits(dictionary, payload.getCombined());
+			BitSet both = bits(dictionary, payload.getBoth());
+			BitSet bothValid = bits(dictionary, payload.getBothValid());
+			flagged[p] = new BitSet[] {
+					or(both, bits(dictionary, payload.getAmarilloOnly())),
+					or(both, bits(dictionary, payload.getSfdcOnly())),
+					or(bothValid, bits(dictionary, payload.getAmarilloValid())),
+					or(bothValid, bits(dictionary, payload.getSfdcValid())),
+					bits(dictionary, payload.getSfdcDupes()) };
+			BitSet again = (BitSet) seen.clone();
+			again.and(combined);
+			several.or(again);
+			seen.or(combined);
+			split(flagged[p][0], flagged[p][2], amarilloValid, amarilloInvalid);
+			split(flagged[p][1], flagged[p][3], sfdcValid, sfdcInvalid);
+		}
+		// a source conflicts if it has the tenant as valid under one product and invalid under another
+		BitSet validityConflicts = amarilloValid;
+		validityConflicts.and(amarilloInvalid);
+		sfdcValid.and(sfdcInvalid);
+		validityConflicts.or(sfdcValid);
+
+		List<Conflict> conflicts = Lists.newArrayListWithCapacity(several.cardinality());
+		for (int id = several.nextSetBit(0); id != -1; id = several.nextSetBit(id + 1)) {
+			int[] flags = new int[payloads.length];
+			for (int p = 0; p < payloads.length; p++) {
+				for (int f = 0; f < FLAGS.length; f++) {
+					if (flagged[p][f].get(id)) flags[p] |= FLAGS[f];
+				}
+			}
+			conflicts.add(new Conflict(dictionary.getTenant(id), flags, validityConflicts.get(id)));
+		}
+		return conflicts;
+	}
+
+	/**
+	 * The dictionary the payloads share, or a dictionary of their tenants if they
+	 * were not classified over the same one.
+	 */
+	private static TenantDictionary dictionary(ResultPayload... payloads) {
+		TenantDictionary shared = payloads.length > 0 ? payloads[0].getTenants() : null;
+		for (ResultPayload payload : payloads) {
+			if (payload.getTenants() != shared) shared = null;
+		}
+		if (shared != null) return shared;
+		Set<String> tenants = Sets.newHashSet();
+		for (ResultPayload payload : payloads) {
+			tenants.addAll(payload.getCombined());
+		}
+		return new TenantDictionary(tenants);
+	}
+
+	/** The ids of the set's tenants, the set's own bitmap if it is over the dictionary */
+	private static BitSet bits(TenantDictionary dictionary, Set<String> tenants) {
+		if (tenants instanceof TenantSet && ((TenantSet) tenants).getDictionary() == dictionary) {
+			return ((TenantSet) tenants).ids();
+		}
+		BitSet ids = new BitSet(dictionary.size());
+		for (String tenant : tenants) {
+			int id = dictionary.idOf(tenant);
+			if (id != -1) ids.set(id);
+		}
+		return ids;
+	}
+
+	private static BitSet or(BitSet left, BitSet right) {
+		BitSet result = (BitSet) left.clone();
+		result.or(right);
+		return result;
+	}
+
+	/** Adds the members that are valid to valid and the others to invalid */
+	private static void split(BitSet members, BitSet validMembers, BitSet valid, BitSet invalid) {
+		BitSet in = (BitSet) members.clone();
+		in.and(validMembers);
+		valid.or(in);
+		in = (BitSet) members.clone();
+		in.andNot(validMembers);
+		invalid.or(in);
+	}
+
+	/** Class and validity of the flags as named in the product sheets, empty for 0 */
+	public static String describe(int flags) {
+		if (flags == 0) return "";
+		boolean inAmarillo = (flags & TenantClassification.IN_AMARILLO) != 0;
+		boolean inSfdc = (flags & TenantClassification.IN_SFDC) != 0;
+		boolean leftValid = (flags & TenantClassification.AMARILLO_VALID) != 0;
+		boolean rightValid = (flags & TenantClassification.SFDC_VALID) != 0;
+		String membership = inAmarillo && inSfdc ? "In Both" : inAmarillo ? "Amarillo Only" : "SFDC Only";
+		String validity = leftValid && rightValid ? "Both Valid" : leftValid ? "Amarillo Valid" : rightValid ? "SFDC Valid" : "Neither Valid";
+		return membership + ", " + validity;
+	}
+
+}
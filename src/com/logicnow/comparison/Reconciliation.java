@@ -0,0 +1,86 @@
+package com.logicnow.comparison;
+
+import java.util.BitSet;
+import java.util.List;
+
+import com.logicnow.comparison.data.Column;
+
+/**
+ * Membership and validity of every tenant in each of a number of sources, as
+ * computed by {@link TenantJoin#reconcile(TenantDictionary, List)}. Each source
+ * has a bitmap of the tenants it has, of those whose rows are all valid and of
+ * those with more than one row, over the ids of a shared tenant dictionary.
+ */
+public class Reconciliation {
+
+	/** Sources a tenant's vector has room for */
+	public static final int MAX_SOURCES = 32;
+
+	/** Tenants per source, rows of a tenant flagged "0" in the valid column are invalid */
+	public static class Source {
+		private final String name;
+		private final TenantRowIndex groups;
+		private final Column validColumn;
+
+		/** A source without a valid column has every row valid */
+		public Source(String name, TenantRowIndex groups, Column validColumn) {
+			this.name = name;
+			this.groups = groups;
+			this.validColumn = validColumn;
+		}
+
+		public String getName() { return name; }
+		public TenantRowIndex getGroups() { return groups; }
+		public Column getValidColumn() { return validColumn; }
+	}
+
+	private final TenantDictionary tenants;
+	private final List<Source> sources;
+	private final BitSet[] members;
+	private final BitSet[] valid;
+	private final BitSet[] duplicates;
+
+	Reconciliation(TenantDictionary tenants, List<Source> sources, BitSet[] members, BitSet[] valid, BitSet[] duplicates) {
+		this.tenants = tenants;
+		this.sources = sources;
+		this.members = members;
+		this.valid = valid;
+		this.duplicates = duplicates;
+	}
+
+	public TenantDictionary getTenants() { return tenants; }
+
+	public int getSourceCount() { return sources.size(); }
+	public Source getSource(int source) { return sources.get(source); }
+
+	/** Position of the named source, -1 if there is none */
+	public int indexOf(String name) {
+		for (int i = 0; i < sources.size(); i++) {
+			if (sources.get(i).getName().equals(name)) return i;
+		}
+		return -1;
+	}
+
+	/** Tenants the source has */
+	public TenantSet getMembers(int source) { return new TenantSet(tenants, (BitSet) members[source].clone()); }
+	/** Tenants the source has whose rows are all valid */
+	public TenantSet getValid(int source) { return new TenantSet(tenants, (BitSet) valid[source].clone()); }
+	/** Tenants with more than one row in the source */
+	public TenantSet getDuplicates(int source) { return new TenantSet(tenants, (BitSet) duplicates[source].clone()); }
+
+	/**
+	 * The tenant's vector: bit 2 * source is set if the source has the tenant and
+	 * bit 2 * source + 1 if its rows there are all valid. 0 for unknown tenants.
+	 */
+	public long getVector(String tenant) {
+		int id = tenants.idOf(tenant);
+		if (id == -1) return 0;
+		long vector = 0;
+		for (int source = 0; source < sources.size(); source++) {
+			if (members[source].get(id)) vector |= 1L << (2 * source);
+			if (valid[source].get(id)) vector |= 1L << (2 * source + 1);
+		}
+		return vector;
+	}
+
+}
@@ -1,38 +1,57 @@
 package com.logicnow.comparison;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 
-import org.apache.commons.io.input.BOMInputStream;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.logicnow.comparison.csv.CsvEngine;
+import com.logicnow.comparison.csv.CsvOptions;
+import com.logicnow.comparison.csv.CsvRow;
+import com.logicnow.comparison.csv.CsvRowMapper;
+import com.logicnow.comparison.csv.IncrementalCsvReader;
+import com.logicnow.comparison.csv.OpenCsvEngine;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.ColumnType;
+import com.logicnow.comparison.data.Dataset;
+import com.logicnow.comparison.data.DatasetSnapshot;
+import com.logicnow.comparison.data.DerivedColumn;
+import com.logicnow.comparison.filter.FilterImpact;
+import com.logicnow.comparison.filter.FilterPredicate;
 import com.logicnow.comparison.utils.CompUtils;
-import com.logicnow.comparison.utils.CompUtils.CSVRecord;
-import com.opencsv.CSVReader;
 
 public class ReportComparator {
 	
 	private static final String GENERATED_TENANT = "Generated Tenant";
 	private static final String TENANTID = "TenantID";
+
+	public static final String AMARILLO_SOURCE = "Amarillo";
+	public static final String SFDC_SOURCE = "SFDC";
+	public static final String FEED_SOURCE = "Feed";
+
+	public static final String ENGINE_AMARILLO_PROP = "CSV_ENGINE_AMARILLO";
+	public static final String ENGINE_SFDC_PROP = "CSV_ENGINE_SFDC";
+	public static final String ENGINE_FEED_PROP = "CSV_ENGINE_FEED";
+	public static final String SNAPSHOT_PROP = "CSV_SNAPSHOT";
+	public static final String FILTER_IMPACT_PROP = "FILTER_IMPACT";
+
+	private final TenantJoin join = new TenantJoin();
 	
 	private static Map<String, String> PRODUCT_TENANT_MAP;
 	{ 
@@ -48,31 +67,84 @@ public class ReportComparator {
 	
 	
 	public ResultPayload compare(String startDate, String endDate, String dateTime, String configPath, String amarilloPath, String sfdcPath, String feedPath) throws Exception {
-		
-		System.out.println();
-		System.out.println("---------------------------------------------------------");
-		System.out.println();
-
-		System.out.println(MessageFormat.format("Processing comparison config=[{0}] amarillo=[{1}] sfdc=[{2}] feed=[{3}] ", new Object[] { configPath, amarilloPath, sfdcPath, feedPath }));
+		return compare(startDate, endDate, dateTime, configPath, loadData(amarilloPath, sfdcPath, feedPath));
+	}
 
-		ResultPayload result = new ResultPayload(startDate, endDate, configPath, amarilloPath, sfdcPath, feedPath);
+	/**
+	 * Reads the source files, columns typed by any of the given configs are parsed
+	 * while loading.
+	 */
+	public ReportData loadData(String amarilloPath, String sfdcPath, String feedPath, String... configPaths) throws IOException {
+		return loadData(amarilloPath, sfdcPath, feedPath, null, configPaths);
+	}
 
-		File configFile = new File(configPath);
+	/**
+	 * Reads the source files, with a state only the rows that are new or changed
+	 * since the state's previous run are parsed.
+	 */
+	public ReportData loadData(String amarilloPath, String sfdcPath, String feedPath, IncrementalState state, String... configPaths) throws IOException {
 		File amarilloFile = new File(amarilloPath);
 		File sfdcFile = new File(sfdcPath);
 		File feedFile = new File(feedPath);
-		
-		if (!configFile.exists()) throw new IllegalArgumentException("Config file [" + configFile.getAbsolutePath() + "] does not exist");
+
 		if (!amarilloFile.exists()) throw new IllegalArgumentException("Amarillo CSV file [" + amarilloFile.getAbsolutePath() + "] does not exist");
 		if (!sfdcFile.exists()) throw new IllegalArgumentException("SFDC CSV file [" + sfdcFile.getAbsolutePath() + "] does not exist");
 
-		JsonReader jsonReader = Json.createReader(new StringReader(CompUtils.readFileAsText(configFile)));
-		JsonObject configs = jsonReader.readObject();
-		jsonReader.close();
+		System.out.println(MessageFormat.format("Loading source data amarillo=[{0}] sfdc=[{1}] feed=[{2}] ", new Object[] { amarilloPath, sfdcPath, feedPath }));
+
+		CsvEngine amarilloEngine = CsvEngine.forName(CompUtils.getProperty(ENGINE_AMARILLO_PROP, CsvEngine.OPENCSV));
+		CsvEngine sfdcEngine = CsvEngine.forName(CompUtils.getProperty(ENGINE_SFDC_PROP, CsvEngine.OPENCSV));
+		CsvEngine feedEngine = CsvEngine.forName(CompUtils.getProperty(ENGINE_FEED_PROP, CsvEngine.OPENCSV));
+
+		Map<String, ColumnType> amarilloTypes = Maps.newHashMap();
+		Map<String, ColumnType> sfdcTypes = Maps.newHashMap();
+		Set<String> amarilloFilterColumns = Sets.newHashSet();
+		Set<String> sfdcFilterColumns = Sets.newHashSet();
+		for (String configPath : configPaths) {
+			Pair<ComparatorConfig, ComparatorConfig> configs = loadConfigs(configPath);
+			amarilloTypes.putAll(CompUtils.getColumnTypes(configs.getLeft()));
+			sfdcTypes.putAll(CompUtils.getColumnTypes(configs.getRight()));
+			amarilloFilterColumns.addAll(CompUtils.getFilterColumns(configs.getLeft()));
+			sfdcFilterColumns.addAll(CompUtils.getFilterColumns(configs.getRight()));
+		}
+
+		if (state != null) {
+			Pair<Dataset, ReportData.Change> amarillo = readCSVFile("amarillo", amarilloFile, CsvOptions.DEFAULT, amarilloEngine, amarilloTypes, state, true);
+			Pair<Dataset, ReportData.Change> sfdc = readCSVFile("sfdc", sfdcFile, CsvOptions.DEFAULT, sfdcEngine, sfdcTypes, state, true);
+			Pair<Dataset, ReportData.Change> feed = readCSVFile("feed", feedFile, CsvOptions.DEFAULT, feedEngine, Maps.newHashMap(), state, false);
+			indexColumns(amarillo.getLeft(), amarilloFilterColumns);
+			indexColumns(sfdc.getLeft(), sfdcFilterColumns);
+			ReportData data = new ReportData(amarilloPath, sfdcPath, feedPath, amarillo.getLeft(), sfdc.getLeft(), feed.getLeft());
+			data.setIncremental(state, amarillo.getRight(), sfdc.getRight());
+			data.setConfigPaths(configPaths);
+			return data;
+		}
+
+		Dataset amarilloRecords = readCSVFile(amarilloFile, CsvOptions.DEFAULT, amarilloEngine, amarilloTypes);
+		Dataset sfdcRecords = readCSVFile(sfdcFile, CsvOptions.DEFAULT, sfdcEngine, sfdcTypes);
+		Dataset feedRecords = readCSVFile(feedFile, CsvOptions.DEFAULT, feedEngine, Maps.newHashMap());
+		indexColumns(amarilloRecords, amarilloFilterColumns);
+		indexColumns(sfdcRecords, sfdcFilterColumns);
+
+		ReportData data = new ReportData(amarilloPath, sfdcPath, feedPath, amarilloRecords, sfdcRecords, feedRecords);
+		data.setConfigPaths(configPaths);
+		return data;
+	}
+
+	public ResultPayload compare(String startDate, String endDate, String dateTime, String configPath, ReportData data) throws Exception {
 		
+		System.out.println();
+		System.out.println("---------------------------------------------------------");
+		System.out.println();
+
+		System.out.println(MessageFormat.format("Processing comparison config=[{0}] amarillo=[{1}] sfdc=[{2}] feed=[{3}] ", new Object[] { configPath, data.getAmarilloPath(), data.getSfdcPath(), data.getFeedPath() }));
+
+		ResultPayload result = new ResultPayload(startDate, endDate, configPath, data.getAmarilloPath(), data.getSfdcPath(), data.getFeedPath());
+
 		// Create configuration objects
-		ComparatorConfig leftConfig = new ComparatorConfig(configs.getJsonObject(CompUtils.PARAM_LEFT));
-		ComparatorConfig rightConfig = new ComparatorConfig(configs.getJsonObject(CompUtils.PARAM_RIGHT));
+		Pair<ComparatorConfig, ComparatorConfig> configs = loadConfigs(configPath);
+		ComparatorConfig leftConfig = configs.getLeft();
+		ComparatorConfig rightConfig = configs.getRight();
 		
 		System.out.println("Amarillo config:");
 		System.out.println(leftConfig.asString());
@@ -84,109 +156,213 @@ public class ReportComparator {
 		
 		result.setConfig(Pair.of(leftConfig,  rightConfig));
 
-		Pair<String[], List<CSVRecord>> amarilloRecords = readCSVFile(leftConfig, amarilloFile);
-		amarilloRecords = generateTenants(leftConfig, amarilloRecords);
-		result.setAmarilloRecords(amarilloRecords);
+		// Typed columns are normally parsed at load time, this only types columns of configs not seen then
+		data.applyColumnTypes(CompUtils.getColumnTypes(leftConfig), CompUtils.getColumnTypes(rightConfig));
 
-		Pair<String[], List<CSVRecord>> amarilloAllRecords = readCSVFile(null, amarilloFile);
-		amarilloAllRecords = generateTenants(leftConfig, amarilloAllRecords);
+		// Filtered views are derived per config from the "All" views shared by every config
+		String generatedKey = getGeneratedKey(leftConfig);
+		Dataset amarilloAllRecords = getAmarilloAllRecords(leftConfig, data);
 		result.setAmarilloAllRecords(amarilloAllRecords);
-		
-		Pair<String[], List<CSVRecord>> sfdcRecords = readCSVFile(rightConfig, sfdcFile);
-		result.setSfdcRecords(sfdcRecords);
 
-		Pair<String[], List<CSVRecord>> sfdcAllRecords = readCSVFile(null, sfdcFile);
+		// Fails before any filtering if a config names a column the source files do not have
+		ExecutionPlan leftPlan = ExecutionPlan.compile(leftConfig, amarilloAllRecords.getHeaders(), GENERATED_TENANT);
+		ExecutionPlan rightPlan = ExecutionPlan.compile(rightConfig, data.getSfdcRecords().getHeaders());
+
+		Dataset sfdcAllRecords = data.getSfdcRecords();
 		result.setSfdcAllRecords(sfdcAllRecords);
 
-		feedFile = CompUtils.fixCSVAnomalies(feedFile, "\\\"", "\"");
-		Pair<String[], List<CSVRecord>> feedRecords = readCSVFile(null, feedFile);
+		Dataset amarilloRecords;
+		Dataset sfdcRecords;
+		if (Boolean.parseBoolean(CompUtils.getProperty(FILTER_IMPACT_PROP, "false"))) {
+			// Attribution evaluates every filter for every row, so it only runs when asked for
+			Pair<Dataset, List<FilterImpact>> amarillo = CompUtils.filterColumnsWithImpact(leftConfig, amarilloAllRecords, GENERATED_TENANT, GENERATED_TENANT);
+			Pair<Dataset, List<FilterImpact>> sfdc = CompUtils.filterColumnsWithImpact(rightConfig, sfdcAllRecords, rightConfig.getTenantColumn());
+			amarilloRecords = amarillo.getLeft();
+			sfdcRecords = sfdc.getLeft();
+			result.setFilterImpact(amarillo.getRight(), sfdc.getRight());
+		} else {
+			// Every config the data was loaded for is filtered in one pass, on the first comparison of the period
+			Map<String, Pair<Dataset, Dataset>> filteredRecords = data.filteredRecords(startDate + "|" + endDate, () -> filterConfigs(startDate, endDate, data));
+			Pair<Dataset, Dataset> records = filteredRecords.get(configPath);
+			amarilloRecords = records != null ? records.getLeft() : CompUtils.filterColumns(leftConfig, amarilloAllRecords, GENERATED_TENANT);
+			sfdcRecords = records != null ? records.getRight() : CompUtils.filterColumns(rightConfig, sfdcAllRecords);
+		}
+		result.setAmarilloRecords(amarilloRecords);
+		result.setSfdcRecords(sfdcRecords);
+
+		Dataset feedRecords = data.getFeedRecords();
 		result.setFeedRecords(feedRecords);
 
-		// Create Tenant to Record maps
-		Map<String, List<CSVRecord>> amarilloMap = createTenantToRecordMap(leftConfig, amarilloRecords, GENERATED_TENANT);
+		// Create Tenant to row maps
+		TenantRowIndex amarilloMap = createTenantToRecordMap(leftConfig, amarilloRecords, GENERATED_TENANT);
 		result.setAmarilloMap(amarilloMap);
-		Map<String, List<CSVRecord>> amarilloAllMap = createTenantToRecordMap(null, amarilloAllRecords, GENERATED_TENANT);
+		TenantRowIndex amarilloAllMap = getAmarilloAllMap(leftConfig, data);
 		result.setAmarilloAllMap(amarilloAllMap);
-		Map<String, List<CSVRecord>> sfdcMap = createTenantToRecordMap(rightConfig, sfdcRecords, rightConfig.getTenantColumn());
+		TenantRowIndex sfdcMap = createTenantToRecordMap(rightConfig, sfdcRecords, rightConfig.getTenantColumn());
 		result.setSFDCMap(sfdcMap);
-		Map<String, List<CSVRecord>> sfdcAllMap = createTenantToRecordMap(null, sfdcAllRecords, null, "Core Product");
+		TenantRowIndex sfdcAllMap = data.tenantMap("sfdcAll", () -> createTenantToRecordMap(null, sfdcAllRecords, null, "Core Product"));
 		result.setSfdcAllMap(sfdcAllMap);
-		Map<String, List<CSVRecord>> feedMap = createTenantToRecordMap(null, feedRecords, TENANTID);
+		TenantRowIndex feedMap = data.tenantMap("feed", () -> createTenantToRecordMap(null, feedRecords, TENANTID));
 		result.setFeedMap(feedMap);
 		
-		// Create Tenant Sets
-		Set<String> amarilloTenants = amarilloMap.keySet();
-		Set<String> sfdcTenants = sfdcMap.keySet();
-		
-		// Calculate intersection - trials in both amarillo and SFDC
-		Set<String> intersection = new HashSet<String>(amarilloTenants);
-		intersection.retainAll(sfdcTenants);
-		
-		// Calculate combined - trials occurring in amarillo and/or SFDC
-		Set<String> combined = new HashSet<String>(amarilloTenants);
-		combined.addAll(sfdcTenants);
-		
-		// Create validity containers
-		Set<String> amarilloValid = Sets.newHashSet();
-		Set<String> sfdcValid = Sets.newHashSet();
-		Set<String> bothValid = Sets.newHashSet();
-		Set<String> neitherValid = Sets.newHashSet();
-		Set<String> onlyAmarilloValid = Sets.newHashSet();
-		Set<String> onlySFDCValid = Sets.newHashSet();
-		Set<String> mismatchValidity = Sets.newHashSet();
-		
-		// Calculate validity
-		for (String tenant : combined) {
-			List<CSVRecord> leftOnes = amarilloMap.get(tenant);
-			List<CSVRecord> rightOnes = sfdcMap.get(tenant);
-			String leftValidity = allValid(leftOnes, amarilloRecords.getLeft(), leftConfig.getIsValidColumn()); 
-			String rightValidity = allValid(rightOnes, sfdcRecords.getLeft(), rightConfig.getIsValidColumn()); 
-			if ("1".equals(leftValidity)) amarilloValid.add(tenant);
-			if ("1".equals(rightValidity)) sfdcValid.add(tenant);
-			boolean inBoth = intersection.contains(tenant);
-			if ("1".equals(leftValidity)) {	
-				if ("1".equals(rightValidity)) bothValid.add(tenant);
-				else onlyAmarilloValid.add(tenant);
-			} else {
-				if ("1".equals(rightValidity)) onlySFDCValid.add(tenant);
-				else if (inBoth) neitherValid.add(tenant);
+		// Classify every tenant occurring in amarillo and/or SFDC
+		Column amarilloValidColumn = leftPlan.getValidColumn() != -1 ? amarilloRecords.getColumn(leftPlan.getValidColumn()) : null;
+		Column sfdcValidColumn = rightPlan.getValidColumn() != -1 ? sfdcRecords.getColumn(rightPlan.getValidColumn()) : null;
+		IncrementalState state = data.getState();
+		String payloadKey = state != null ? IncrementalState.payloadKey(configPath, startDate, endDate) : null;
+		Map<String, Integer> previousFlags = null;
+		if (state != null && data.getAmarilloChange() != null && data.getSfdcChange() != null) {
+			previousFlags = state.loadPayload(payloadKey);
+		}
+		result.setTenants(getTenants(configPath, data, amarilloMap, sfdcMap));
+		if (previousFlags != null) {
+			// Only tenants with changed rows can change class, the others keep their previous flags
+			Set<String> changed = getChangedTenants(leftConfig, rightConfig, data, amarilloAllRecords);
+			TenantClassification classification = new TenantClassification(amarilloMap, sfdcMap, amarilloValidColumn, sfdcValidColumn);
+			for (Map.Entry<String, Integer> tenant : previousFlags.entrySet()) {
+				if (!changed.contains(tenant.getKey())) TenantClassification.add(result, tenant.getKey(), tenant.getValue());
+			}
+			for (String tenant : changed) {
+				TenantClassification.add(result, tenant, classification.classify(tenant));
 			}
-			if (inBoth && !leftValidity.equals(rightValidity)) mismatchValidity.add(tenant);
+			System.out.println(MessageFormat.format("Reclassified {0} changed of {1} tenants", new Object[] { changed.size(), result.getCombined().size() }));
+		} else {
+			// Amarillo and SFDC decide a tenant's class, the other sources add to its vector
+			Reconciliation reconciliation = join.reconcile(result.getTenants(), Arrays.asList(
+					new Reconciliation.Source(AMARILLO_SOURCE, amarilloMap, amarilloValidColumn),
+					new Reconciliation.Source(SFDC_SOURCE, sfdcMap, sfdcValidColumn),
+					new Reconciliation.Source(FEED_SOURCE, feedMap, null)));
+			result.setReconciliation(reconciliation);
+			TenantClassification.set(result, reconciliation, reconciliation.indexOf(AMARILLO_SOURCE), reconciliation.indexOf(SFDC_SOURCE));
 		}
+		if (state != null) state.putPayload(payloadKey, result);
+		result.setNearMatches(NearMatcher.match(result.getAmarilloOnly(), result.getSfdcOnly()));
 
-		// Totals
-		int numLeft = amarilloTenants.size();
-		int numLeftValid = amarilloValid.size();
-		int numRight = sfdcTenants.size();
-		int numRightValid = sfdcValid.size();
-		int numDiff = numLeft - numRight;
-		int numValidDiff = numLeftValid - numRightValid;
+		result.setproduct(leftConfig.getShortProduct());
+		printResults(result);
 		
-		// Present in Amarillo not in SFDC by Tenant
-		Set<String> inAmarilloOnly = Sets.newHashSet(amarilloTenants);
-		inAmarilloOnly.removeAll(sfdcTenants);
-
-		// Present in SFDC not in Amarillo by Tenant
-		Set<String> inSFDCOnly = new HashSet<String>(sfdcTenants);
-		inSFDCOnly.removeAll(amarilloTenants);
-
-		// Duplicates in SFDC
-		Set<String> dupesInSFDC = Sets.newHashSet();
-		for (String tenant : sfdcTenants) {
-			if (sfdcMap.get(tenant).size() > 1) {
-				dupesInSFDC.add(tenant);
+		return result;
+	}
+
+	private String getGeneratedKey(ComparatorConfig config) {
+		return config.getIDColumn() + "|" + config.getProductColumn() + "|" + config.getTenantColumn();
+	}
+
+	private Dataset getAmarilloAllRecords(ComparatorConfig config, ReportData data) {
+		return data.dataset("amarilloAll|" + getGeneratedKey(config), () -> generateTenants(config, data.getAmarilloRecords()));
+	}
+
+	private TenantRowIndex getAmarilloAllMap(ComparatorConfig config, ReportData data) {
+		Dataset amarilloAllRecords = getAmarilloAllRecords(config, data);
+		return data.tenantMap("amarilloAll|" + getGeneratedKey(config), () -> createTenantToRecordMap(null, amarilloAllRecords, GENERATED_TENANT));
+	}
+
+	/**
+	 * The run's tenant dictionary: every amarillo and SFDC tenant of every config the
+	 * data was loaded for, sorted once and shared by their payloads so sets of
+	 * different payloads combine as bitmaps. Feed tenants only add to the vectors of
+	 * these tenants. A config the data was not loaded for gets a dictionary of its own.
+	 */
+	private TenantDictionary getTenants(String configPath, ReportData data, Map<String, List<Integer>> amarilloMap, Map<String, List<Integer>> sfdcMap) {
+		if (!Arrays.asList(data.getConfigPaths()).contains(configPath)) {
+			Set<String> tenants = Sets.newHashSet(amarilloMap.keySet());
+			tenants.addAll(sfdcMap.keySet());
+			return new TenantDictionary(tenants);
+		}
+		return data.tenants(() -> {
+			Set<String> tenants = Sets.newHashSet();
+			Set<String> sfdcTenantColumns = Sets.newLinkedHashSet();
+			for (String path : data.getConfigPaths()) {
+				Pair<ComparatorConfig, ComparatorConfig> configs;
+				try {
+					configs = loadConfigs(path);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				tenants.addAll(getAmarilloAllMap(configs.getLeft(), data).keySet());
+				sfdcTenantColumns.add(configs.getRight().getTenantColumn());
+			}
+			Dataset sfdcRecords = data.getSfdcRecords();
+			for (String tenantColumn : sfdcTenantColumns) {
+				Column column = sfdcRecords.getColumn(tenantColumn);
+				for (int row = 0; row < sfdcRecords.size(); row++) {
+					tenants.add(column != null ? column.getString(row) : null);
+				}
+			}
+			System.out.println(MessageFormat.format("{0} tenants in the run''s tenant dictionary", new Object[] { tenants.size() }));
+			return new TenantDictionary(tenants);
+		});
+	}
+
+	/**
+	 * Filtered amarillo and SFDC records of every config the data was loaded for,
+	 * by config path. Filters shared by several configs are evaluated once per row.
+	 */
+	private Map<String, Pair<Dataset, Dataset>> filterConfigs(String startDate, String endDate, ReportData data) {
+		List<ComparatorConfig> leftConfigs = Lists.newArrayList();
+		List<ComparatorConfig> rightConfigs = Lists.newArrayList();
+		List<Dataset> amarilloAllRecords = Lists.newArrayList();
+		List<Dataset> sfdcAllRecords = Lists.newArrayList();
+		for (String configPath : data.getConfigPaths()) {
+			Pair<ComparatorConfig, ComparatorConfig> configs;
+			try {
+				configs = loadConfigs(configPath);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
+			CompUtils.addDatesToConfig(configs.getLeft(), startDate, endDate);
+			CompUtils.addDatesToConfig(configs.getRight(), startDate, endDate);
+			leftConfigs.add(configs.getLeft());
+			rightConfigs.add(configs.getRight());
+			amarilloAllRecords.add(getAmarilloAllRecords(configs.getLeft(), data));
+			sfdcAllRecords.add(data.getSfdcRecords());
+		}
+		List<Dataset> amarilloRecords = CompUtils.filterColumns(leftConfigs, amarilloAllRecords, GENERATED_TENANT);
+		List<Dataset> sfdcRecords = CompUtils.filterColumns(rightConfigs, sfdcAllRecords);
+		Map<String, Pair<Dataset, Dataset>> records = Maps.newHashMap();
+		for (int i = 0; i < data.getConfigPaths().length; i++) {
+			records.put(data.getConfigPaths()[i], Pair.of(amarilloRecords.get(i), sfdcRecords.get(i)));
 		}
-		String product = leftConfig.getShortProduct();
+		return records;
+	}
+
+	private void printResults(ResultPayload result) {
+		Set<String> intersection = result.getBoth();
+		Set<String> inAmarilloOnly = result.getAmarilloOnly();
+		Set<String> inSFDCOnly = result.getSfdcOnly();
+		Set<String> dupesInSFDC = result.getSfdcDupes();
+		Set<String> bothValid = result.getBothValid();
+		Set<String> neitherValid = result.getNeitherValid();
+		Set<String> onlyAmarilloValid = result.getAmarilloValid();
+		Set<String> onlySFDCValid = result.getSfdcValid();
+		Set<String> mismatchValidity = result.getMismatchValidity();
+		String product = result.getProduct();
 
 		int bothSize = intersection.size();
 		int onlyAmarilloSize = inAmarilloOnly.size();
 		int onlySFDCSize = inSFDCOnly.size();
 		int totalSize = bothSize + onlyAmarilloSize + onlySFDCSize;
 		int dupesSize = dupesInSFDC.size();
+
+		int bothValidSize = bothValid.size();
+		int neitherValidSize = neitherValid.size();
+		int onlyAmarilloValidSize = onlyAmarilloValid.size();
+		int onlySFDCValidSize = onlySFDCValid.size();
+		int mismatchSize = mismatchValidity.size();
+		int totalValidLeads = bothValidSize + neitherValidSize + onlyAmarilloValidSize + onlySFDCValidSize;
+		
+		int diffSize = totalSize - bothValidSize - neitherValidSize;
+
+		// Totals
+		int numLeft = bothSize + onlyAmarilloSize;
+		int numLeftValid = bothValidSize + onlyAmarilloValidSize;
+		int numRight = bothSize + onlySFDCSize;
+		int numRightValid = bothValidSize + onlySFDCValidSize;
+		int numDiff = numLeft - numRight;
+		int numValidDiff = numLeftValid - numRightValid;
 		
 		// Overview
-		printHeader(leftConfig.getShortProduct(), "Trial Count Breakdown");
+		printHeader(product, "Trial Count Breakdown");
 		
 		System.out.println(MessageFormat.format("Total:            ({0})", new Object[] { totalSize }));
 		System.out.println(MessageFormat.format("In Both:          ({0})", new Object[] { bothSize }));
@@ -204,16 +380,7 @@ public class ReportComparator {
 		System.out.println(MessageFormat.format("In SFDC Only:\n{0}", new Object[] { CompUtils.getDBString(inSFDCOnly) } ));
 		System.out.println(MessageFormat.format("Dupes in SFDC:\n{0}", new Object[] { CompUtils.getDBString(dupesInSFDC) }));
 
-		printHeader(leftConfig.getShortProduct(), "Validity Breakdown");
-
-		int bothValidSize = bothValid.size();
-		int neitherValidSize = neitherValid.size();
-		int onlyAmarilloValidSize = onlyAmarilloValid.size();
-		int onlySFDCValidSize = onlySFDCValid.size();
-		int mismatchSize = mismatchValidity.size();
-		int totalValidLeads = bothValidSize + neitherValidSize + onlyAmarilloValidSize + onlySFDCValidSize;
-		
-		int diffSize = totalSize - bothValidSize - neitherValidSize;
+		printHeader(product, "Validity Breakdown");
 		
 		System.out.println(MessageFormat.format("Total:         ({0}) ({1})", new Object[] { totalSize, "100%" }));
 		System.out.println(MessageFormat.format("Total Valid:   ({0}) ({1})", new Object[] { totalValidLeads, CompUtils.toPercentage(totalValidLeads, totalSize) }));
@@ -228,111 +395,253 @@ public class ReportComparator {
 		System.out.println(MessageFormat.format("SFDC Only:\n{0}", new Object[] { CompUtils.getDBString(onlySFDCValid) }));
 		System.out.println(MessageFormat.format("Mismatch:\n{0}", new Object[] { CompUtils.getDBString(mismatchValidity) }));
 		System.out.println();
-		
-		result.setproduct(product);
-		result.setCombined(combined);
-		result.setBoth(intersection);
-		result.setAmarilloOnly(inAmarilloOnly);
-		result.setSfdcOnly(inSFDCOnly);
-		result.setSfdcDupes(dupesInSFDC);
-		result.setBothValid(bothValid);
-		result.setNeitherValid(neitherValid);
-		result.setAmarilloValid(onlyAmarilloValid);
-		result.setSfdcValid(onlySFDCValid);
-		result.setMismatchValidity(mismatchValidity);
-		
-		return result;
 	}
 
 	private void printHeader(String product, String header) {
 		System.out.println(MessageFormat.format("\n{0} {1}\n", new Object[] { product, header }));
 	}
 
-	private String allValid(List<CSVRecord> recs, String[] headers, String isValidColumn) {
-		if (recs == null) return "0";
-		
-		for (CSVRecord rec : recs) {
-			String actual = rec.toMap(headers).get(isValidColumn);
-			if ("0".equals(actual)) {
-				return "0";
-			}
+	/**
+	 * Tenants of the amarillo and SFDC rows that were removed or added since the previous run.
+	 */
+	private Set<String> getChangedTenants(ComparatorConfig leftConfig, ComparatorConfig rightConfig, ReportData data, Dataset amarilloAllRecords) {
+		Set<String> changed = Sets.newHashSet();
+		ReportData.Change amarillo = data.getAmarilloChange();
+		Dataset previous = amarillo.getPrevious();
+		Column ids = previous.getColumn(leftConfig.getIDColumn());
+		Column products = previous.getColumn(leftConfig.getProductColumn());
+		Column tenants = previous.getColumn(leftConfig.getTenantColumn());
+		for (int row : amarillo.getRemovedRows()) {
+			String id = ids != null ? ids.getString(row) : null;
+			String product = products != null ? products.getString(row) : null;
+			String tenant = tenants != null ? tenants.getString(row) : null;
+			changed.add(generateTenant(id, tenant, product));
+		}
+		Column generated = amarilloAllRecords.getColumn(GENERATED_TENANT);
+		for (int row : amarillo.getAddedRows()) {
+			changed.add(generated.getString(row));
+		}
+		ReportData.Change sfdc = data.getSfdcChange();
+		Column previousTenants = sfdc.getPrevious().getColumn(rightConfig.getTenantColumn());
+		Column currentTenants = data.getSfdcRecords().getColumn(rightConfig.getTenantColumn());
+		for (int row : sfdc.getRemovedRows()) {
+			changed.add(previousTenants != null ? previousTenants.getString(row) : null);
 		}
-		return "1";
+		for (int row : sfdc.getAddedRows()) {
+			changed.add(currentTenants != null ? currentTenants.getString(row) : null);
+		}
+		return changed;
 	}
-	private Map<String, List<CSVRecord>> createTenantToRecordMap(ComparatorConfig config, Pair<String[], List<CSVRecord>> recs, String tenantColumn) {
+
+	private TenantRowIndex createTenantToRecordMap(ComparatorConfig config, Dataset recs, String tenantColumn) {
 		return createTenantToRecordMap(config, recs, tenantColumn, null);
 	}
 
-	private Map<String, List<CSVRecord>> createTenantToRecordMap(ComparatorConfig config, Pair<String[], List<CSVRecord>> recs, String tenantColumn, String productColumn) {
-		Map<String, List<CSVRecord>> map = Maps.newLinkedHashMap();
-		for (CSVRecord r : recs.getRight()) {
-			Map<String, String> recMap = r.toMap(recs.getLeft());
-			String productValue = tenantColumn == null ? recMap.get(productColumn) : null;
-			String tenCol = tenantColumn != null ? tenantColumn : PRODUCT_TENANT_MAP.get(productValue);
-			String tenant = recMap.get(tenCol);
-			List<CSVRecord> tenantRecs = map.get(tenant);
-			if (tenantRecs == null) {
-				tenantRecs = Lists.newArrayList();
-				map.put(tenant, tenantRecs);
-			}
-			tenantRecs.add(r);
+	private TenantRowIndex createTenantToRecordMap(ComparatorConfig config, Dataset recs, String tenantColumn, String productColumn) {
+		if (tenantColumn != null) {
+			Column tenants = recs.getColumn(tenantColumn);
+			return join.group(recs.size(), row -> tenants != null ? tenants.getString(row) : null);
+		}
+		Column products = recs.getColumn(productColumn);
+		// tenant column of each product, resolved before the rows are read in parallel
+		Map<String, Column> productTenants = Maps.newHashMap();
+		for (Map.Entry<String, String> product : PRODUCT_TENANT_MAP.entrySet()) {
+			productTenants.put(product.getKey(), recs.getColumn(product.getValue()));
 		}
-		return map;
+		return join.group(recs.size(), row -> {
+			Column tenants = products != null ? productTenants.get(products.getString(row)) : null;
+			return tenants != null ? tenants.getString(row) : null;
+		});
 	}
-	
-	
 
-	private Pair<String[], List<CSVRecord>> generateTenants(ComparatorConfig config, Pair<String[], List<CSVRecord>> recs) {
-		String[] headers = recs.getLeft();
-		String[] newHeaders = ArrayUtils.add(headers, GENERATED_TENANT);
-		String idColumn = config.getIDColumn();
-		String productColumn = config.getProductColumn();
-		String tenantColumn = config.getTenantColumn();
-		for (CSVRecord r : recs.getRight()) {
-			Map<String, String> map = r.toMap(headers);
-			String id = map.get(idColumn);
-			String product = map.get(productColumn);
-			String tenant = map.get(tenantColumn);
-			String generatedTenant = generateTenant(id, tenant, product);
-			String[] newItems = ArrayUtils.add(r.items, generatedTenant);
-			r.items = newItems;
-		}
-		return Pair.of(newHeaders, recs.getRight());
+	private Dataset generateTenants(ComparatorConfig config, Dataset recs) {
+		Column ids = recs.getColumn(config.getIDColumn());
+		Column products = recs.getColumn(config.getProductColumn());
+		Column tenants = recs.getColumn(config.getTenantColumn());
+		// derived when a row is first read, the source rows are not copied
+		return recs.withColumn(GENERATED_TENANT, new DerivedColumn(recs.size(), row -> {
+			String id = ids != null ? ids.getString(row) : null;
+			String product = products != null ? products.getString(row) : null;
+			String tenant = tenants != null ? tenants.getString(row) : null;
+			return generateTenant(id, tenant, product);
+		}));
 	}
 
 	protected String generateTenant(String id, String tenant, String product) {
 		if (tenant != null) return tenant;
-		if ("RM".equals(product) || "RM(IT)".equals(product)) {
-			if (id.startsWith("salesforce")) {
-				return id.replace("salesforce:", "");
+		return TenantIdCodec.of(product).toTenant(id);
+	}
+
+	/**
+	 * Builds the bitmap index of each of the columns, filters on indexed columns
+	 * are evaluated with bitmap operations.
+	 */
+	private void indexColumns(Dataset data, Set<String> columns) {
+		for (String name : columns) {
+			Column column = data.getColumn(name);
+			if (column != null) column.getIndex();
+		}
+	}
+
+	/**
+	 * Parses the CSV file, or reloads its snapshot if it was parsed the same way before.
+	 */
+	private Dataset readCSVFile(File csv, CsvOptions options, CsvEngine engine, Map<String, ColumnType> types) throws IOException {
+		boolean snapshots = Boolean.parseBoolean(CompUtils.getProperty(SNAPSHOT_PROP, "true"));
+		String key = snapshots ? DatasetSnapshot.key(csv, options + "|" + new TreeMap<>(types)) : null;
+		Dataset data = snapshots ? DatasetSnapshot.load(csv, key) : null;
+		if (data != null) {
+			System.out.println(MessageFormat.format("{0} rows loaded from snapshot of [{1}]", new Object[] { data.size(), csv }));
+			return data;
+		}
+		Pair<String[], List<String[]>> rows = engine.read(csv, options, new RowMapper());
+		data = Dataset.of(rows.getLeft(), rows.getRight(), types);
+		if (snapshots) {
+			try {
+				DatasetSnapshot.write(csv, key, data);
+			} catch (IOException e) {
+				System.out.println(MessageFormat.format("Could not write snapshot of [{0}]: {1}", new Object[] { csv, e }));
 			}
-			return id.replace("rm:", "").replace(":", "_");
-		} else if ("BU".equals(product)) {
-			return id.replace("backup:", "");
 		}
-		return id;
+		return data;
 	}
 
-	private Pair<String[], List<CSVRecord>> readCSVFile(ComparatorConfig config, File csv) throws IOException {
-		return getCsvData(csv.getAbsolutePath(), config, new FileInputStream(csv));
+	/**
+	 * Reads the CSV file against its state from the previous run, only records that
+	 * are new or changed are parsed and merged with the unchanged rows of the
+	 * previous dataset. The change is null if there was no previous state. Records are
+	 * decoded by the configured engine, rows decoded by another engine are parsed again.
+	 */
+	private Pair<Dataset, ReportData.Change> readCSVFile(String name, File csv, CsvOptions options, CsvEngine engine, Map<String, ColumnType> types, IncrementalState state, boolean classified) throws IOException {
+		String signature = options + "|" + engine.getClass().getSimpleName() + "|" + new TreeMap<>(types);
+		DatasetSnapshot previous = state.loadSource(name, signature);
+		IncrementalCsvReader.Result<String[]> read = IncrementalCsvReader.read(csv, options, engine, previous != null ? previous.getFingerprints() : new long[0], new RowMapper());
+		Dataset parsed = Dataset.of(read.getHeaders(), read.getRecords(), types);
+		if (previous == null || !Arrays.equals(previous.getDataset().getHeaders(), read.getHeaders())) {
+			state.putSource(name, signature, parsed, read.getFingerprints(), null, classified);
+			return Pair.of(parsed, null);
+		}
+		int[] previousRows = read.getPreviousRows();
+		int[] sources = new int[previousRows.length];
+		int[] addedRows = new int[previousRows.length];
+		boolean[] kept = new boolean[previous.getDataset().size()];
+		int added = 0;
+		int next = 0;
+		for (int row = 0; row < previousRows.length; row++) {
+			if (previousRows[row] >= 0) {
+				sources[row] = previousRows[row];
+				// a repeated record is unchanged but still adds a row to its tenant
+				if (kept[previousRows[row]]) addedRows[added++] = row;
+				kept[previousRows[row]] = true;
+			} else {
+				addedRows[added++] = row;
+				sources[row] = -1 - next++;
+			}
+		}
+		int[] removedRows = new int[kept.length];
+		int removed = 0;
+		for (int row = 0; row < kept.length; row++) {
+			if (!kept[row]) removedRows[removed++] = row;
+		}
+		Dataset data = Dataset.merge(previous.getDataset(), parsed, sources);
+		System.out.println(MessageFormat.format("{0} rows of [{1}] parsed, {2} unchanged since the previous run, {3} removed", new Object[] { next, csv, sources.length - next, removed }));
+		state.putSource(name, signature, data, read.getFingerprints(), previous, classified);
+		return Pair.of(data, new ReportData.Change(previous.getDataset(), Arrays.copyOf(removedRows, removed), Arrays.copyOf(addedRows, added)));
 	}
 
-	public Pair<String[], List<CSVRecord>> getCsvData(String key, ComparatorConfig config, InputStream in) throws IOException {
-		List<CSVRecord> records = new ArrayList<CSVRecord>();
-		String[] headerItems = null;
-		try (CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(new BOMInputStream(in), "UTF-8")))) {
-			headerItems = reader.readNext();
-			String[] lineItems;
-			while ((lineItems = reader.readNext()) != null) {
-				// break at first empty row
-				if (lineItems.length == 1 && "".equals(lineItems[0])) {
-					break;
-				}
-				records.add(new CSVRecord(lineItems));
-		    }
+	public Dataset getCsvData(String key, ComparatorConfig config, InputStream in) throws IOException {
+		return getCsvData(key, config, in, CsvOptions.DEFAULT);
+	}
+
+	/**
+	 * Reads the config's columns of the rows its filters select, other rows and
+	 * columns are dropped while reading.
+	 */
+	public Dataset getCsvData(String key, ComparatorConfig config, InputStream in, CsvOptions options) throws IOException {
+		if (config == null) {
+			Pair<String[], List<String[]>> rows = new OpenCsvEngine().read(in, options, new RowMapper());
+			return Dataset.of(rows.getLeft(), rows.getRight(), null);
+		}
+		FilteredRowMapper mapper = new FilteredRowMapper(config);
+		Pair<String[], List<String[]>> rows = new OpenCsvEngine().read(in, options, mapper);
+//		System.out.println(MessageFormat.format("{0} rows read from [{1}]", new Object[] { rows.getRight().size(), key }));
+		return Dataset.of(mapper.getHeaders(), rows.getRight(), mapper.getColumnTypes());
+	}
+
+	/**
+	 * Reads the left and right configs of a config file.
+	 */
+	public Pair<ComparatorConfig, ComparatorConfig> loadConfigs(String configPath) throws IOException {
+		File configFile = new File(configPath);
+		
+		if (!configFile.exists()) throw new IllegalArgumentException("Config file [" + configFile.getAbsolutePath() + "] does not exist");
+
+		JsonReader jsonReader = Json.createReader(new StringReader(CompUtils.readFileAsText(configFile)));
+		JsonObject configs = jsonReader.readObject();
+		jsonReader.close();
+
+		return Pair.of(new ComparatorConfig(configs.getJsonObject(CompUtils.PARAM_LEFT)), new ComparatorConfig(configs.getJsonObject(CompUtils.PARAM_RIGHT)));
+	}
+
+	private static class RowMapper implements CsvRowMapper<String[]> {
+		public void header(String[] header) { }
+		public String[] map(CsvRow row) { return row.toArray(); }
+	}
+
+	/**
+	 * Maps the rows selected by a config's filters to the config's columns, as
+	 * {@link CompUtils#filterColumns(ComparatorConfig, Dataset, String...)} would.
+	 */
+	private static class FilteredRowMapper implements CsvRowMapper<String[]> {
+		private final ComparatorConfig config;
+		private ExecutionPlan plan;
+		private int[] columns;
+		private FilterPredicate[] includeFilters;
+		private FilterPredicate[] excludeFilters;
+		private int[] includeColumns;
+		private int[] excludeColumns;
+
+		FilteredRowMapper(ComparatorConfig config) {
+			this.config = config;
+		}
+
+		public String[] getHeaders() { return plan.getColumns(); }
+		public Map<String, ColumnType> getColumnTypes() { return plan.getColumnTypes(); }
+
+		public void header(String[] header) {
+			plan = ExecutionPlan.compile(config, header);
+			columns = plan.getProjection();
+			includeFilters = new FilterPredicate[plan.getIncludeCount()];
+			includeColumns = new int[includeFilters.length];
+			for (int i = 0; i < includeFilters.length; i++) {
+				includeFilters[i] = plan.getIncludeFilter(i);
+				includeColumns[i] = columns[plan.getIncludeColumn(i)];
+			}
+			excludeFilters = new FilterPredicate[plan.getExcludeCount()];
+			excludeColumns = new int[excludeFilters.length];
+			for (int i = 0; i < excludeFilters.length; i++) {
+				excludeFilters[i] = plan.getExcludeFilter(i);
+				excludeColumns[i] = columns[plan.getExcludeColumn(i)];
+			}
+		}
+
+		public String[] map(CsvRow row) {
+			for (int i = 0; i < includeColumns.length; i++) {
+				if (!includeFilters[i].matches(get(row, includeColumns[i]))) return null;
+			}
+			for (int i = 0; i < excludeColumns.length; i++) {
+				if (excludeFilters[i].matches(get(row, excludeColumns[i]))) return null;
+			}
+			String[] values = new String[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				values[i] = get(row, columns[i]);
+			}
+			return values;
+		}
+
+		private static String get(CsvRow row, int index) {
+			return index < row.size() ? row.get(index) : "";
 		}
-//		System.out.println(MessageFormat.format("{0} rows read from [{1}]", new Object[] { records.size(), key }));
-    	return CompUtils.filterColumns(config, headerItems, records);
 	}
 
 	public static class CombinedRow {
@@ -0,0 +1,150 @@
+package com.logicnow.comparison;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.google.common.collect.Maps;
+import com.logicnow.comparison.data.ColumnType;
+import com.logicnow.comparison.data.Dataset;
+
+/**
+ * Source data shared by every product comparison of a run. Each input file is
+ * parsed once into a columnar dataset; configs receive views derived from it,
+ * and any config independent view (generated tenants, tenant maps over the "All"
+ * data) is computed once and cached here. Datasets are never modified after
+ * loading, typing a column replaces the dataset with one sharing the other columns.
+ */
+public class ReportData {
+
+	private final String amarilloPath;
+	private final String sfdcPath;
+	private final String feedPath;
+
+	private Dataset amarilloRecords;
+	private Dataset sfdcRecords;
+	private final Dataset feedRecords;
+
+	private String[] configPaths = new String[0];
+
+	private IncrementalState state;
+	private Change amarilloChange;
+	private Change sfdcChange;
+
+	private TenantDictionary tenants;
+	private final Map<String, Dataset> datasets = Maps.newHashMap();
+	private final Map<String, TenantRowIndex> tenantMaps = Maps.newHashMap();
+	private final Map<String, Map<String, Pair<Dataset, Dataset>>> filteredRecords = Maps.newHashMap();
+
+	public ReportData(String amarilloPath, String sfdcPath, String feedPath, Dataset amarilloRecords, Dataset sfdcRecords, Dataset feedRecords) {
+		this.amarilloPath = amarilloPath;
+		this.sfdcPath = sfdcPath;
+		this.feedPath = feedPath;
+		this.amarilloRecords = amarilloRecords;
+		this.sfdcRecords = sfdcRecords;
+		this.feedRecords = feedRecords;
+	}
+
+	public String getAmarilloPath() { return amarilloPath; }
+	public String getSfdcPath() { return sfdcPath; }
+	public String getFeedPath() { return feedPath; }
+
+	/** Configs the data was loaded for */
+	public String[] getConfigPaths() { return configPaths; }
+	public void setConfigPaths(String... configPaths) { this.configPaths = configPaths; }
+
+	/** State of an incremental run, null for a full run */
+	public IncrementalState getState() { return state; }
+	/** Rows changed since the previous run, null if all rows are new */
+	public Change getAmarilloChange() { return amarilloChange; }
+	public Change getSfdcChange() { return sfdcChange; }
+
+	public void setIncremental(IncrementalState state, Change amarilloChange, Change sfdcChange) {
+		this.state = state;
+		this.amarilloChange = amarilloChange;
+		this.sfdcChange = sfdcChange;
+	}
+
+	public synchronized Dataset getAmarilloRecords() { return amarilloRecords; }
+	public synchronized Dataset getSfdcRecords() { return sfdcRecords; }
+	public Dataset getFeedRecords() { return feedRecords; }
+
+	/**
+	 * Stores the named columns as the given types. Normally every config's types are
+	 * applied when the data is loaded and this is a no-op; views cached before a
+	 * column is typed keep the untyped column.
+	 */
+	public synchronized void applyColumnTypes(Map<String, ColumnType> amarilloTypes, Map<String, ColumnType> sfdcTypes) {
+		amarilloRecords = amarilloRecords.withColumnTypes(amarilloTypes);
+		sfdcRecords = sfdcRecords.withColumnTypes(sfdcTypes);
+	}
+
+	/**
+	 * Returns the dataset cached under key, creating it with the supplier on first use.
+	 */
+	public synchronized Dataset dataset(String key, Supplier<Dataset> supplier) {
+		Dataset dataset = datasets.get(key);
+		if (dataset == null) {
+			dataset = supplier.get();
+			datasets.put(key, dataset);
+		}
+		return dataset;
+	}
+
+	/**
+	 * Returns the tenant to row index cached under key, creating it with the supplier on first use.
+	 */
+	public synchronized TenantRowIndex tenantMap(String key, Supplier<TenantRowIndex> supplier) {
+		TenantRowIndex map = tenantMaps.get(key);
+		if (map == null) {
+			map = supplier.get();
+			tenantMaps.put(key, map);
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the run's tenant dictionary, creating it with the supplier on first use.
+	 */
+	public synchronized TenantDictionary tenants(Supplier<TenantDictionary> supplier) {
+		if (tenants == null) tenants = supplier.get();
+		return tenants;
+	}
+
+	/**
+	 * Returns the filtered amarillo and SFDC records by config path cached under key,
+	 * creating them with the supplier on first use.
+	 */
+	public synchronized Map<String, Pair<Dataset, Dataset>> filteredRecords(String key, Supplier<Map<String, Pair<Dataset, Dataset>>> supplier) {
+		Map<String, Pair<Dataset, Dataset>> records = filteredRecords.get(key);
+		if (records == null) {
+			records = Collections.unmodifiableMap(supplier.get());
+			filteredRecords.put(key, records);
+		}
+		return records;
+	}
+
+	/**
+	 * Rows of a source that differ from the previous run: rows of the previous
+	 * dataset that are gone and rows of the current dataset that were added. A
+	 * changed row is both removed and added.
+	 */
+	public static class Change {
+		private final Dataset previous;
+		private final int[] removedRows;
+		private final int[] addedRows;
+
+		public Change(Dataset previous, int[] removedRows, int[] addedRows) {
+			this.previous = previous;
+			this.removedRows = removedRows;
+			this.addedRows = addedRows;
+		}
+
+		public Dataset getPrevious() { return previous; }
+		public int[] getRemovedRows() { return removedRows; }
+		public int[] getAddedRows() { return addedRows; }
+	}
+
+}
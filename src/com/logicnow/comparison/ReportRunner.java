@@ -19,10 +19,23 @@ public class ReportRunner {
 	public static final String PREFIX_SFDC = DIR_DATA + "sfdc_";
 	public static final String PREFIX_FEED = DIR_DATA + "feed_";
 	
+	private ReportComparator comparator = new ReportComparator();
+
 	public ResultPayload run(String startDate, String endDate, String dateTime, String config, String amarillo, String sfdc, String feed) throws Exception {
-		ReportComparator comparator = new ReportComparator();
 		return comparator.compare(startDate, endDate, dateTime, config, amarillo, sfdc, feed);
 	}
+
+	public ResultPayload run(String startDate, String endDate, String dateTime, String config, ReportData data) throws Exception {
+		return comparator.compare(startDate, endDate, dateTime, config, data);
+	}
+
+	public ReportData load(String amarillo, String sfdc, String feed, String... configs) throws Exception {
+		return comparator.loadData(amarillo, sfdc, feed, configs);
+	}
+
+	public ReportData load(String amarillo, String sfdc, String feed, IncrementalState state, String... configs) throws Exception {
+		return comparator.loadData(amarillo, sfdc, feed, state, configs);
+	}
 	
 	public static void main(String[] args) throws Exception {
 		String startDate = CompUtils.getMonthStartDate();
@@ -43,43 +56,38 @@ public class ReportRunner {
 		File sfdcFeedFile = RemoteUtils.getMostRecentSFDCFeedFile();
 		String sfdcFeedFilePath = sfdcFeedFile.getAbsolutePath();
 		
+		// Month-to-date runs can reuse the state of the previous run of the same month
+		IncrementalState state = Boolean.parseBoolean(CompUtils.getProperty(IncrementalState.INCREMENTAL_PROP, "false")) ? IncrementalState.forPeriod(startDate) : null;
+
 		ReportRunner runner = new ReportRunner();
+		ReportData data = runner.load(amarilloFilePath, sfdcFilePath, sfdcFeedFilePath, state, 
+				DIR_CONFIG + "config_RM.json", DIR_CONFIG + "config_RMIT.json", DIR_CONFIG + "config_BU.json", 
+				DIR_CONFIG + "config_MM.json", DIR_CONFIG + "config_MMIT.json", DIR_CONFIG + "config_RI.json");
 		String dateTime = CompUtils.TIME_FORMAT.format(Calendar.getInstance().getTime()).replace(":", "-");
 		ResultPayload r1 = runner.run(startDate, endDate, dateTime, 
 				DIR_CONFIG + "config_RM.json", 
-				amarilloFilePath, 
-				sfdcFilePath, 
-				sfdcFeedFilePath);
+				data);
 		ResultPayload r2 = runner.run(startDate, endDate, dateTime, 
 				DIR_CONFIG + "config_RMIT.json", 
-				amarilloFilePath, 
-				sfdcFilePath, 
-				sfdcFeedFilePath);
+				data);
 		ResultPayload r3 = runner.run(startDate, endDate, dateTime, 
 				DIR_CONFIG + "config_BU.json", 
-				amarilloFilePath, 
-				sfdcFilePath, 
-				sfdcFeedFilePath);
+				data);
 		ResultPayload r4 = runner.run(startDate, endDate, dateTime, 
 				DIR_CONFIG + "config_MM.json", 
-				amarilloFilePath, 
-				sfdcFilePath, 
-				sfdcFeedFilePath);
+				data);
 		ResultPayload r5 = runner.run(startDate, endDate, dateTime, 
 				DIR_CONFIG + "config_MMIT.json", 
-				amarilloFilePath, 
-				sfdcFilePath, 
-				sfdcFeedFilePath);
+				data);
 		ResultPayload r6 = runner.run(startDate, endDate, dateTime, 
 				DIR_CONFIG + "config_RI.json", 
-				amarilloFilePath, 
-				sfdcFilePath, 
-				sfdcFeedFilePath);
+				data);
 		File tmpOutputDir = new File(DIR_OUTPUT);
 		File outputDir = new File(tmpOutputDir, dateTime);
 		if (!outputDir.exists()) outputDir.mkdirs();
 		File excelFile = new File(outputDir, "analysis_" + startDate + "_" + endDate + ".xls");
 		ExcelUtils.writeExcelFile(excelFile, false, r1, r2, r3, r4, r5, r6);
+		if (state != null) state.save();
 		System.out.println(CompUtils.generateCommentedSQL(r1, r2, r3, r4, r5, r6));
 	}
 
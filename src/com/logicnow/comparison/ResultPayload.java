@@ -8,19 +8,23 @@ import java.util.Set;
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.google.common.collect.Sets;
+import com.logicnow.comparison.data.Dataset;
+import com.logicnow.comparison.filter.FilterImpact;
 import com.logicnow.comparison.utils.CompUtils;
-import com.logicnow.comparison.utils.CompUtils.CSVRecord;
 
 public class ResultPayload {
 
 	private String product;
 
-	private Map<String, List<CSVRecord>> amarilloMap;
-	private Map<String, List<CSVRecord>> amarilloAllMap;
-	private Map<String, List<CSVRecord>> sfdcMap;
-	private Map<String, List<CSVRecord>> sfdcAllMap;
-	private Map<String, List<CSVRecord>> feedMap;
+	private Map<String, List<Integer>> amarilloMap;
+	private Map<String, List<Integer>> amarilloAllMap;
+	private Map<String, List<Integer>> sfdcMap;
+	private Map<String, List<Integer>> sfdcAllMap;
+	private Map<String, List<Integer>> feedMap;
 	
+	private TenantDictionary tenants;
+	private Reconciliation reconciliation;
+	private Map<String, NearMatcher.Match> nearMatches;
 	private Set<String> combined = Sets.newHashSet();
 	private Set<String> both = Sets.newHashSet();
 	private Set<String> amarilloOnly = Sets.newHashSet();
@@ -32,13 +36,15 @@ public class ResultPayload {
 	private Set<String> sfdcDupes = Sets.newHashSet();
 	private Set<String> mismatchValidity = Sets.newHashSet();
 
-	private Pair<String[], List<CompUtils.CSVRecord>> amarilloRecords;
-	private Pair<String[], List<CompUtils.CSVRecord>> amarilloAllRecords;
-	private Pair<String[], List<CompUtils.CSVRecord>> sfdcRecords;
-	private Pair<String[], List<CompUtils.CSVRecord>> sfdcAllRecords;
-	private Pair<String[], List<CompUtils.CSVRecord>> feedRecords;
+	private Dataset amarilloRecords;
+	private Dataset amarilloAllRecords;
+	private Dataset sfdcRecords;
+	private Dataset sfdcAllRecords;
+	private Dataset feedRecords;
 
 	private Pair<ComparatorConfig, ComparatorConfig> configs;
+	private List<FilterImpact> amarilloFilterImpact;
+	private List<FilterImpact> sfdcFilterImpact;
 
 	private String startDate;
 	private String endDate;
@@ -60,6 +66,34 @@ public class ResultPayload {
 	public Date getEndDate() { return parseDate(endDate); }
 	private Date parseDate(String d) { return CompUtils.parseDate(d); }
 
+	/**
+	 * Replaces the result sets with empty bitmap sets over the run's tenants.
+	 */
+	public void setTenants(TenantDictionary tenants) {
+		this.tenants = tenants;
+		combined = tenants.newSet();
+		both = tenants.newSet();
+		amarilloOnly = tenants.newSet();
+		sfdcOnly = tenants.newSet();
+		bothValid = tenants.newSet();
+		neitherValid = tenants.newSet();
+		amarilloValid = tenants.newSet();
+		sfdcValid = tenants.newSet();
+		sfdcDupes = tenants.newSet();
+		mismatchValidity = tenants.newSet();
+	}
+
+	/** The run's tenants, null until set */
+	public TenantDictionary getTenants() { return tenants; }
+
+	/** Membership and validity of the tenants in each source, null if the payload was classified incrementally */
+	public Reconciliation getReconciliation() { return reconciliation; }
+	public void setReconciliation(Reconciliation reconciliation) { this.reconciliation = reconciliation; }
+
+	/** Near match of each amarillo only and SFDC only tenant that has one, by tenant */
+	public Map<String, NearMatcher.Match> getNearMatches() { return nearMatches; }
+	public void setNearMatches(Map<String, NearMatcher.Match> nearMatches) { this.nearMatches = nearMatches; }
+
 	public Set<String> getBoth() { return both; }
 	public void setBoth(Set<String> both) { this.both = both; }
 
@@ -90,39 +124,48 @@ public class ResultPayload {
 	public Set<String> getCombined() { return combined; }
 	public void setCombined(Set<String> combined) { this.combined = combined; }
 
-	public Pair<String[], List<CompUtils.CSVRecord>> getAmarilloRecords() { return amarilloRecords; }
-	public void setAmarilloRecords(Pair<String[], List<CompUtils.CSVRecord>> amarilloRecords) { this.amarilloRecords = amarilloRecords; }
+	public Dataset getAmarilloRecords() { return amarilloRecords; }
+	public void setAmarilloRecords(Dataset amarilloRecords) { this.amarilloRecords = amarilloRecords; }
 
-	public Pair<String[], List<CompUtils.CSVRecord>> getSfdcRecords() { return sfdcRecords; }
-	public void setSfdcRecords(Pair<String[], List<CompUtils.CSVRecord>> sfdcRecords) { this.sfdcRecords = sfdcRecords; }
+	public Dataset getSfdcRecords() { return sfdcRecords; }
+	public void setSfdcRecords(Dataset sfdcRecords) { this.sfdcRecords = sfdcRecords; }
 
-	public Pair<String[], List<CompUtils.CSVRecord>> getFeedRecords() { return feedRecords; }
-	public void setFeedRecords(Pair<String[], List<CompUtils.CSVRecord>> feedRecords) { this.feedRecords = feedRecords; }
+	public Dataset getFeedRecords() { return feedRecords; }
+	public void setFeedRecords(Dataset feedRecords) { this.feedRecords = feedRecords; }
 
-	public Map<String, List<CSVRecord>> getAmarilloMap() { return amarilloMap; }
-	public void setAmarilloMap(Map<String, List<CSVRecord>> amarilloMap) { this.amarilloMap = amarilloMap; }
+	public Map<String, List<Integer>> getAmarilloMap() { return amarilloMap; }
+	public void setAmarilloMap(Map<String, List<Integer>> amarilloMap) { this.amarilloMap = amarilloMap; }
 
-	public Map<String, List<CSVRecord>> getAmarilloAllMap() { return amarilloAllMap; }
-	public void setAmarilloAllMap(Map<String, List<CSVRecord>> amarilloAllMap) { this.amarilloAllMap = amarilloAllMap; }
+	public Map<String, List<Integer>> getAmarilloAllMap() { return amarilloAllMap; }
+	public void setAmarilloAllMap(Map<String, List<Integer>> amarilloAllMap) { this.amarilloAllMap = amarilloAllMap; }
 
-	public Map<String, List<CSVRecord>> getSFDCMap() { return sfdcMap; }
-	public void setSFDCMap(Map<String, List<CSVRecord>> sfdcMap) { this.sfdcMap = sfdcMap; }
+	public Map<String, List<Integer>> getSFDCMap() { return sfdcMap; }
+	public void setSFDCMap(Map<String, List<Integer>> sfdcMap) { this.sfdcMap = sfdcMap; }
 	
-	public Map<String, List<CSVRecord>> getSfdcAllMap() { return sfdcAllMap; }
-	public void setSfdcAllMap(Map<String, List<CSVRecord>> sfdcAllMap) { this.sfdcAllMap = sfdcAllMap; }
+	public Map<String, List<Integer>> getSfdcAllMap() { return sfdcAllMap; }
+	public void setSfdcAllMap(Map<String, List<Integer>> sfdcAllMap) { this.sfdcAllMap = sfdcAllMap; }
 
-	public Map<String, List<CSVRecord>> getFeedMap() { return feedMap; }
-	public void setFeedMap(Map<String, List<CSVRecord>> feedMap) { this.feedMap = feedMap; }
+	public Map<String, List<Integer>> getFeedMap() { return feedMap; }
+	public void setFeedMap(Map<String, List<Integer>> feedMap) { this.feedMap = feedMap; }
 
-	public Pair<String[], List<CSVRecord>> getSfdcAllRecords() { return sfdcAllRecords; }
-	public void setSfdcAllRecords(Pair<String[], List<CSVRecord>> sfdcAllRecords) { this.sfdcAllRecords = sfdcAllRecords; }
+	public Dataset getSfdcAllRecords() { return sfdcAllRecords; }
+	public void setSfdcAllRecords(Dataset sfdcAllRecords) { this.sfdcAllRecords = sfdcAllRecords; }
 	
-	public Pair<String[], List<CSVRecord>> getAmarilloAllRecords() { return amarilloAllRecords; }
-	public void setAmarilloAllRecords(Pair<String[], List<CSVRecord>> amarilloAllRecords) { this.amarilloAllRecords = amarilloAllRecords; }
+	public Dataset getAmarilloAllRecords() { return amarilloAllRecords; }
+	public void setAmarilloAllRecords(Dataset amarilloAllRecords) { this.amarilloAllRecords = amarilloAllRecords; }
 
 	public Pair<ComparatorConfig, ComparatorConfig> getConfigs() { return configs; }
 	public void setConfig(Pair<ComparatorConfig, ComparatorConfig> configs) { this.configs = configs; }
 
+	/** Impact of each amarillo filter, null unless filters were attributed */
+	public List<FilterImpact> getAmarilloFilterImpact() { return amarilloFilterImpact; }
+	/** Impact of each SFDC filter, null unless filters were attributed */
+	public List<FilterImpact> getSfdcFilterImpact() { return sfdcFilterImpact; }
+	public void setFilterImpact(List<FilterImpact> amarilloFilterImpact, List<FilterImpact> sfdcFilterImpact) {
+		this.amarilloFilterImpact = amarilloFilterImpact;
+		this.sfdcFilterImpact = sfdcFilterImpact;
+	}
+
 	public ComparatorConfig getAmarilloConfig() { return getConfigs().getLeft(); }
 	public ComparatorConfig getSfdcConfig() { return getConfigs().getRight(); }
 
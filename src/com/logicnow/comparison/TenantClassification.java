@@ -0,0 +1,137 @@
+package com.logicnow.comparison;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import com.logicnow.comparison.data.Column;
+
+/**
+ * Membership and validity of a tenant as a set of flags. Every result set of a
+ * {@link ResultPayload} is derived from these flags, so a tenant can be added to
+ * or removed from a payload on its own when its rows change.
+ */
+public class TenantClassification {
+
+	public static final int IN_AMARILLO = 1;
+	public static final int IN_SFDC = 2;
+	public static final int AMARILLO_VALID = 4;
+	public static final int SFDC_VALID = 8;
+	public static final int SFDC_DUPE = 16;
+
+	private final Map<String, List<Integer>> amarilloMap;
+	private final Map<String, List<Integer>> sfdcMap;
+	private final BitSet amarilloInvalid;
+	private final BitSet sfdcInvalid;
+
+	public TenantClassification(Map<String, List<Integer>> amarilloMap, Map<String, List<Integer>> sfdcMap, Column amarilloValidColumn, Column sfdcValidColumn) {
+		this.amarilloMap = amarilloMap;
+		this.sfdcMap = sfdcMap;
+		// rows flagged invalid, shared by every classification of the column's rows
+		this.amarilloInvalid = amarilloValidColumn != null ? amarilloValidColumn.getRowsEqual("0") : null;
+		this.sfdcInvalid = sfdcValidColumn != null ? sfdcValidColumn.getRowsEqual("0") : null;
+	}
+
+	public int classify(String tenant) {
+		return classify(amarilloMap.get(tenant), sfdcMap.get(tenant));
+	}
+
+	/**
+	 * Flags of a tenant with the given amarillo and SFDC rows, null if it has none.
+	 */
+	public int classify(List<Integer> leftOnes, List<Integer> rightOnes) {
+		int flags = 0;
+		if (leftOnes != null) flags |= IN_AMARILLO;
+		if (rightOnes != null) flags |= IN_SFDC;
+		if (allValid(leftOnes, amarilloInvalid)) flags |= AMARILLO_VALID;
+		if (allValid(rightOnes, sfdcInvalid)) flags |= SFDC_VALID;
+		if (rightOnes != null && rightOnes.size() > 1) flags |= SFDC_DUPE;
+		return flags;
+	}
+
+	static boolean allValid(List<Integer> rows, BitSet invalid) {
+		if (rows == null) return false;
+		if (invalid == null || invalid.isEmpty()) return true;
+		for (int row : rows) {
+			if (invalid.get(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the payload's result sets from the amarillo and SFDC sources of the
+	 * reconciliation, each set is one bitmap operation.
+	 */
+	public static void set(ResultPayload payload, Reconciliation reconciliation, int amarillo, int sfdc) {
+		TenantSet inAmarillo = reconciliation.getMembers(amarillo);
+		TenantSet inSfdc = reconciliation.getMembers(sfdc);
+		TenantSet leftValid = reconciliation.getValid(amarillo);
+		TenantSet rightValid = reconciliation.getValid(sfdc);
+		TenantSet inBoth = inAmarillo.and(inSfdc);
+		payload.setCombined(inAmarillo.or(inSfdc));
+		payload.setBoth(inBoth);
+		payload.setAmarilloOnly(inAmarillo.andNot(inSfdc));
+		payload.setSfdcOnly(inSfdc.andNot(inAmarillo));
+		payload.setSfdcDupes(reconciliation.getDuplicates(sfdc));
+		payload.setBothValid(leftValid.and(rightValid));
+		payload.setAmarilloValid(leftValid.andNot(rightValid));
+		payload.setSfdcValid(rightValid.andNot(leftValid));
+		payload.setNeitherValid(inBoth.andNot(leftValid).andNot(rightValid));
+		payload.setMismatchValidity(inBoth.and(leftValid.xor(rightValid)));
+	}
+
+	/**
+	 * Adds the tenant to the payload's sets, tenants in neither source are ignored.
+	 */
+	public static void add(ResultPayload payload, String tenant, int flags) {
+		boolean inAmarillo = (flags & IN_AMARILLO) != 0;
+		boolean inSfdc = (flags & IN_SFDC) != 0;
+		if (!inAmarillo && !inSfdc) return;
+		boolean leftValid = (flags & AMARILLO_VALID) != 0;
+		boolean rightValid = (flags & SFDC_VALID) != 0;
+		boolean inBoth = inAmarillo && inSfdc;
+		payload.getCombined().add(tenant);
+		if (inBoth) payload.getBoth().add(tenant);
+		else if (inAmarillo) payload.getAmarilloOnly().add(tenant);
+		else payload.getSfdcOnly().add(tenant);
+		if ((flags & SFDC_DUPE) != 0) payload.getSfdcDupes().add(tenant);
+		if (leftValid) {
+			if (rightValid) payload.getBothValid().add(tenant);
+			else payload.getAmarilloValid().add(tenant);
+		} else {
+			if (rightValid) payload.getSfdcValid().add(tenant);
+			else if (inBoth) payload.getNeitherValid().add(tenant);
+		}
+		if (inBoth && leftValid != rightValid) payload.getMismatchValidity().add(tenant);
+	}
+
+	public static void remove(ResultPayload payload, String tenant) {
+		payload.getCombined().remove(tenant);
+		payload.getBoth().remove(tenant);
+		payload.getAmarilloOnly().remove(tenant);
+		payload.getSfdcOnly().remove(tenant);
+		payload.getSfdcDupes().remove(tenant);
+		payload.getBothValid().remove(tenant);
+		payload.getNeitherValid().remove(tenant);
+		payload.getAmarilloValid().remove(tenant);
+		payload.getSfdcValid().remove(tenant);
+		payload.getMismatchValidity().remove(tenant);
+	}
+
+	/**
+	 * The flags the tenant was added with, read back from the payload's sets.
+	 */
+	public static int flags(ResultPayload payload, String tenant) {
+		int flags = 0;
+		boolean inBoth = payload.getBoth().contains(tenant);
+		if (inBoth || payload.getAmarilloOnly().contains(tenant)) flags |= IN_AMARILLO;
+		if (inBoth || payload.getSfdcOnly().contains(tenant)) flags |= IN_SFDC;
+		if (payload.getBothValid().contains(tenant) || payload.getAmarilloValid().contains(tenant)) flags |= AMARILLO_VALID;
+		if (payload.getBothValid().contains(tenant) || payload.getSfdcValid().contains(tenant)) flags |= SFDC_VALID;
+		if (payload.getSfdcDupes().contains(tenant)) flags |= SFDC_DUPE;
+		return flags;
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.logicnow.comparison;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+/**
+ * The tenants of a run in sorted order, each referenced by its position as a
+ * dense id. Tenant sets over the dictionary iterate in tenant order. A null
+ * tenant sorts first.
+ */
+public class TenantDictionary {
+
+	private final String[] tenants;
+	private final Map<String, Integer> ids;
+
+	public TenantDictionary(Collection<String> tenants) {
+		this.tenants = Sets.newHashSet(tenants).toArray(new String[0]);
+		Arrays.sort(this.tenants, Ordering.<String>natural().nullsFirst());
+		this.ids = Maps.newHashMapWithExpectedSize(this.tenants.length);
+		for (int id = 0; id < this.tenants.length; id++) {
+			ids.put(this.tenants[id], id);
+		}
+	}
+
+	public int size() {
+		return tenants.length;
+	}
+
+	public String getTenant(int id) {
+		return tenants[id];
+	}
+
+	/** Id of the tenant or -1 if it is not in the dictionary */
+	public int idOf(Object tenant) {
+		Integer id = ids.get(tenant);
+		return id != null ? id : -1;
+	}
+
+	/** An empty set of this dictionary's tenants */
+	public TenantSet newSet() {
+		return new TenantSet(this);
+	}
+
+}
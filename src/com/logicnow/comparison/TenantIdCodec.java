@@ -0,0 +1,94 @@
+package com.logicnow.comparison;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps between amarillo lead IDs and the tenants SFDC knows them by, for the
+ * products whose IDs carry a prefix. Each direction is computed once per value
+ * and cached, as the same tenants are mapped for every sheet row and SQL clause.
+ */
+public abstract class TenantIdCodec {
+
+	private static final int CACHE_SIZE = 100000;
+
+	private static final TenantIdCodec RM = new TenantIdCodec() {
+		@Override
+		protected String decode(String id) {
+			if (id.startsWith("salesforce")) {
+				return id.replace("salesforce:", "");
+			}
+			return id.replace("rm:", "").replace(":", "_");
+		}
+
+		@Override
+		protected String encode(String tenant) {
+			String id = tenant.replace("_", ":");
+			int index = id.indexOf(":");
+			if (index != -1) {
+				String prefix = id.substring(0, index);
+				id = id.replace(prefix, "rm:" + prefix);
+			}
+			return id;
+		}
+	};
+
+	private static final TenantIdCodec BACKUP = new TenantIdCodec() {
+		@Override
+		protected String decode(String id) {
+			return id.replace("backup:", "");
+		}
+
+		@Override
+		protected String encode(String tenant) {
+			return "backup:" + tenant;
+		}
+	};
+
+	private static final TenantIdCodec PLAIN = new TenantIdCodec() {
+		@Override
+		protected String decode(String id) {
+			return id;
+		}
+
+		@Override
+		protected String encode(String tenant) {
+			return tenant;
+		}
+	};
+
+	private final Map<String, String> tenants = new ConcurrentHashMap<>();
+	private final Map<String, String> leadIds = new ConcurrentHashMap<>();
+
+	/** Codec of the amarillo product, products without an ID prefix map IDs as they are */
+	public static TenantIdCodec of(String product) {
+		if ("RM".equals(product) || "RM(IT)".equals(product)) return RM;
+		if ("BU".equals(product)) return BACKUP;
+		return PLAIN;
+	}
+
+	/** Tenant of the amarillo lead ID */
+	public String toTenant(String id) {
+		return cached(tenants, id, true);
+	}
+
+	/** Amarillo lead ID of the tenant */
+	public String toLeadId(String tenant) {
+		return cached(leadIds, tenant, false);
+	}
+
+	private String cached(Map<String, String> cache, String value, boolean decode) {
+		if (value == null) return decode ? decode(null) : encode(null);
+		String mapped = cache.get(value);
+		if (mapped == null) {
+			mapped = decode ? decode(value) : encode(value);
+			if (cache.size() < CACHE_SIZE) cache.put(value, mapped);
+		}
+		return mapped;
+	}
+
+	protected abstract String decode(String id);
+
+	protected abstract String encode(String tenant);
+
+}
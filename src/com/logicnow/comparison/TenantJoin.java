@@ -0,0 +1,205 @@
+package com.logicnow.comparison;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.logicnow.comparison.data.Column;
+
+/**
+ * Groups rows by tenant and joins the groups of several sources on a fork-join pool.
+ * <p>
+ * Grouping reads the tenant of each row and its hash partition in parallel row
+ * ranges, orders the rows by partition keeping row order within a partition, then
+ * finds the first row of each row's tenant in each partition's table on its own.
+ * As a tenant's rows all fall in one partition the tables are disjoint, tenants
+ * are then numbered in the order they first occur and their rows indexed, so the
+ * result is the same as grouping the rows one by one.
+ */
+public class TenantJoin {
+
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 14;
+
+	private static final int VALID = 1;
+	private static final int DUPLICATE = 2;
+
+	private final ForkJoinPool pool;
+	private final int minChunkSize;
+
+	public TenantJoin() {
+		this(ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+	}
+
+	public TenantJoin(ForkJoinPool pool, int minChunkSize) {
+		this.pool = pool;
+		this.minChunkSize = minChunkSize;
+	}
+
+	/**
+	 * Rows of each tenant, tenants in the order they first occur and rows ascending.
+	 */
+	public TenantRowIndex group(int size, IntFunction<String> tenantOfRow) {
+		int chunks = chunks(size);
+		int partitions = Integer.highestOneBit(chunks * 2 - 1);
+		String[] keys = new String[size];
+		int[] partitionOf = new int[size];
+		int[][] counts = new int[chunks][partitions];
+		run(chunks, chunk -> {
+			int[] count = counts[chunk];
+			for (int row = start(chunk, chunks, size); row < start(chunk + 1, chunks, size); row++) {
+				keys[row] = tenantOfRow.apply(row);
+				partitionOf[row] = partition(keys[row], partitions);
+				count[partitionOf[row]]++;
+			}
+		});
+		// slots of each chunk's rows in partition order
+		int[] partitionStarts = new int[partitions + 1];
+		int[][] offsets = new int[chunks][partitions];
+		int offset = 0;
+		for (int p = 0; p < partitions; p++) {
+			partitionStarts[p] = offset;
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				offsets[chunk][p] = offset;
+				offset += counts[chunk][p];
+			}
+		}
+		partitionStarts[partitions] = size;
+		int[] rows = new int[size];
+		run(chunks, chunk -> {
+			int[] next = offsets[chunk];
+			for (int row = start(chunk, chunks, size); row < start(chunk + 1, chunks, size); row++) {
+				rows[next[partitionOf[row]]++] = row;
+			}
+		});
+		// first row of each row's tenant, found in the tables of the partitions
+		int[] firstRows = new int[size];
+		run(partitions, p -> {
+			Map<String, Integer> table = Maps.newHashMap();
+			for (int i = partitionStarts[p]; i < partitionStarts[p + 1]; i++) {
+				int row = rows[i];
+				Integer first = table.get(keys[row]);
+				if (first == null) {
+					first = row;
+					table.put(keys[row], first);
+				}
+				firstRows[row] = first;
+			}
+		});
+		// tenants numbered in the order they first occur
+		List<String> tenants = Lists.newArrayList();
+		int[] numbers = new int[size];
+		for (int row = 0; row < size; row++) {
+			if (firstRows[row] == row) {
+				numbers[row] = tenants.size();
+				tenants.add(keys[row]);
+			} else {
+				numbers[row] = numbers[firstRows[row]];
+			}
+		}
+		return new TenantRowIndex(tenants.toArray(new String[tenants.size()]), numbers);
+	}
+
+	/**
+	 * Joins the tenants of any number of sources in one pass. The tenants of each
+	 * source are read in parallel ranges into bitmaps of the tenants it has, those
+	 * whose rows are all valid and those with several rows, over the given tenants.
+	 * Tenants of a source that are not in the dictionary are left out.
+	 */
+	public Reconciliation reconcile(TenantDictionary tenants, List<Reconciliation.Source> sources) {
+		if (sources.size() > Reconciliation.MAX_SOURCES) {
+			throw new IllegalArgumentException("At most " + Reconciliation.MAX_SOURCES + " sources can be reconciled, got " + sources.size());
+		}
+		List<int[]> tasks = Lists.newArrayList();
+		for (int source = 0; source < sources.size(); source++) {
+			int chunks = chunks(sources.get(source).getGroups().size());
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				tasks.add(new int[] { source, chunk, chunks });
+			}
+		}
+		// id of each tenant of a task's range shifted past its valid and duplicate bits, -1 if unknown
+		int[][] found = new int[tasks.size()][];
+		run(tasks.size(), task -> {
+			int source = tasks.get(task)[0];
+			int chunk = tasks.get(task)[1];
+			int chunks = tasks.get(task)[2];
+			TenantRowIndex groups = sources.get(source).getGroups();
+			Column validColumn = sources.get(source).getValidColumn();
+			BitSet invalid = validColumn != null ? validColumn.getRowsEqual("0") : null;
+			int start = start(chunk, chunks, groups.size());
+			int[] ids = new int[start(chunk + 1, chunks, groups.size()) - start];
+			for (int i = 0; i < ids.length; i++) {
+				int t = start + i;
+				int id = tenants.idOf(groups.getTenant(t));
+				if (id != -1) {
+					id <<= 2;
+					if (allValid(groups, t, invalid)) id |= VALID;
+					if (groups.getRowCount(t) > 1) id |= DUPLICATE;
+				}
+				ids[i] = id;
+			}
+			found[task] = ids;
+		});
+		BitSet[] members = new BitSet[sources.size()];
+		BitSet[] valid = new BitSet[sources.size()];
+		BitSet[] duplicates = new BitSet[sources.size()];
+		run(sources.size(), source -> {
+			members[source] = new BitSet(tenants.size());
+			valid[source] = new BitSet(tenants.size());
+			duplicates[source] = new BitSet(tenants.size());
+			for (int task = 0; task < tasks.size(); task++) {
+				if (tasks.get(task)[0] != source) continue;
+				for (int id : found[task]) {
+					if (id == -1) continue;
+					members[source].set(id >>> 2);
+					if ((id & VALID) != 0) valid[source].set(id >>> 2);
+					if ((id & DUPLICATE) != 0) duplicates[source].set(id >>> 2);
+				}
+			}
+		});
+		return new Reconciliation(tenants, sources, members, valid, duplicates);
+	}
+
+	private static boolean allValid(TenantRowIndex groups, int t, BitSet invalid) {
+		if (invalid == null) return true;
+		for (int i = groups.getRowCount(t) - 1; i >= 0; i--) {
+			if (invalid.get(groups.getRow(t, i))) return false;
+		}
+		return true;
+	}
+
+	private int chunks(int size) {
+		return Math.max(1, Math.min(pool.getParallelism() * 4, size / minChunkSize));
+	}
+
+	private static int start(int chunk, int chunks, int size) {
+		return (int) ((long) size * chunk / chunks);
+	}
+
+	private static int partition(String key, int partitions) {
+		if (key == null) return 0;
+		int h = key.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (partitions - 1);
+	}
+
+	private void run(int tasks, IntConsumer task) {
+		if (tasks == 1) {
+			task.accept(0);
+			return;
+		}
+		List<ForkJoinTask<?>> forks = Lists.newArrayList();
+		for (int i = 0; i < tasks; i++) {
+			int index = i;
+			forks.add(pool.submit(() -> task.accept(index)));
+		}
+		for (ForkJoinTask<?> fork : forks) {
+			fork.join();
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.logicnow.comparison;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * Rows of each tenant held in flat int arrays. Tenants are numbered in the order
+ * they first occur and found through an open addressing table of those numbers.
+ * A tenant with a single row stores the row inline, the rows of other tenants are
+ * packed in one overflow array preceded by their count. Read only, the row lists
+ * returned are views of the arrays, callers on hot paths read the rows by tenant
+ * number instead. Tenants are keyed by ID rather than by the run's dictionary: the
+ * dictionary is built from these indexes and leaves out feed only tenants.
+ */
+public class TenantRowIndex extends AbstractMap<String, List<Integer>> {
+
+	private final String[] tenants;
+	private final int[] hashes;
+	// tenant number + 1 by slot, 0 for an empty slot
+	private final int[] slots;
+	// the tenant's row if it has one, else the complement of its offset in overflow
+	private final int[] heads;
+	private final int[] overflow;
+
+	/**
+	 * Index of the rows of each tenant, tenantOfRow holding the tenant number of
+	 * each row in [0, tenants.length). Tenants must be distinct.
+	 */
+	public TenantRowIndex(String[] tenants, int[] tenantOfRow) {
+		this.tenants = tenants;
+		this.hashes = new int[tenants.length];
+		this.slots = new int[tableSize(tenants.length)];
+		for (int t = 0; t < tenants.length; t++) {
+			hashes[t] = hash(tenants[t]);
+			int slot = hashes[t] & (slots.length - 1);
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & (slots.length - 1);
+			}
+			slots[slot] = t + 1;
+		}
+		int[] counts = new int[tenants.length];
+		for (int t : tenantOfRow) {
+			counts[t]++;
+		}
+		this.heads = new int[tenants.length];
+		int size = 0;
+		for (int t = 0; t < tenants.length; t++) {
+			if (counts[t] > 1) {
+				heads[t] = ~size;
+				size += counts[t] + 1;
+			}
+		}
+		this.overflow = new int[size];
+		for (int row = 0; row < tenantOfRow.length; row++) {
+			int t = tenantOfRow[row];
+			if (counts[t] == 1) {
+				heads[t] = row;
+			} else {
+				int offset = ~heads[t];
+				overflow[offset + 1 + overflow[offset]++] = row;
+			}
+		}
+	}
+
+	private static int tableSize(int tenants) {
+		int size = 2;
+		while (size < tenants * 2) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	private static int hash(Object tenant) {
+		int h = Objects.hashCode(tenant) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Number of the tenant, -1 if it has no rows */
+	public int indexOf(Object tenant) {
+		int h = hash(tenant);
+		for (int slot = h & (slots.length - 1); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+			int t = slots[slot] - 1;
+			if (hashes[t] == h && Objects.equals(tenants[t], tenant)) return t;
+		}
+		return -1;
+	}
+
+	public String getTenant(int t) {
+		return tenants[t];
+	}
+
+	/** Number of rows of the tenant by its number */
+	public int getRowCount(int t) {
+		return heads[t] >= 0 ? 1 : overflow[~heads[t]];
+	}
+
+	/** The i-th row of the tenant by its number, rows ascending */
+	public int getRow(int t, int i) {
+		return heads[t] >= 0 ? heads[t] : overflow[~heads[t] + 1 + i];
+	}
+
+	/** Rows of the tenant by its number, ascending */
+	public List<Integer> getRows(int t) {
+		if (heads[t] >= 0) return Collections.singletonList(heads[t]);
+		int offset = ~heads[t];
+		return Collections.unmodifiableList(Ints.asList(overflow).subList(offset + 1, offset + 1 + overflow[offset]));
+	}
+
+	@Override
+	public int size() {
+		return tenants.length;
+	}
+
+	@Override
+	public boolean containsKey(Object tenant) {
+		return indexOf(tenant) != -1;
+	}
+
+	@Override
+	public List<Integer> get(Object tenant) {
+		int t = indexOf(tenant);
+		return t != -1 ? getRows(t) : null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, List<Integer>>> entrySet() {
+		return new AbstractSet<Map.Entry<String, List<Integer>>>() {
+			@Override
+			public int size() {
+				return tenants.length;
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, List<Integer>>> iterator() {
+				return new Iterator<Map.Entry<String, List<Integer>>>() {
+					private int next;
+
+					public boolean hasNext() {
+						return next < tenants.length;
+					}
+
+					public Map.Entry<String, List<Integer>> next() {
+						if (next == tenants.length) throw new NoSuchElementException();
+						int t = next++;
+						return new SimpleImmutableEntry<>(tenants[t], getRows(t));
+					}
+				};
+			}
+		};
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.logicnow.comparison;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of the tenants of a {@link TenantDictionary}, stored as a bitmap of their
+ * ids. Iterates in tenant order, and set operations between sets of the same
+ * dictionary work a word at a time.
+ */
+public class TenantSet extends AbstractSet<String> {
+
+	private final TenantDictionary dictionary;
+	private final BitSet ids;
+
+	TenantSet(TenantDictionary dictionary) {
+		this(dictionary, new BitSet(dictionary.size()));
+	}
+
+	TenantSet(TenantDictionary dictionary, BitSet ids) {
+		this.dictionary = dictionary;
+		this.ids = ids;
+	}
+
+	public TenantDictionary getDictionary() {
+		return dictionary;
+	}
+
+	@Override
+	public int size() {
+		return ids.cardinality();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return ids.isEmpty();
+	}
+
+	@Override
+	public boolean contains(Object tenant) {
+		int id = dictionary.idOf(tenant);
+		return id != -1 && ids.get(id);
+	}
+
+	@Override
+	public boolean add(String tenant) {
+		int id = dictionary.idOf(tenant);
+		if (id == -1) {
+			throw new IllegalArgumentException("Tenant [" + tenant + "] is not in the tenant dictionary");
+		}
+		if (ids.get(id)) return false;
+		ids.set(id);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object tenant) {
+		int id = dictionary.idOf(tenant);
+		if (id == -1 || !ids.get(id)) return false;
+		ids.clear(id);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		ids.clear();
+	}
+
+	/** Tenants in both sets */
+	public TenantSet and(TenantSet other) {
+		BitSet result = copy();
+		result.and(other.bits(dictionary));
+		return new TenantSet(dictionary, result);
+	}
+
+	/** Tenants in either set */
+	public TenantSet or(TenantSet other) {
+		BitSet result = copy();
+		result.or(other.bits(dictionary));
+		return new TenantSet(dictionary, result);
+	}
+
+	/** Tenants in this set but not the other */
+	public TenantSet andNot(TenantSet other) {
+		BitSet result = copy();
+		result.andNot(other.bits(dictionary));
+		return new TenantSet(dictionary, result);
+	}
+
+	/** Tenants in exactly one of the sets */
+	public TenantSet xor(TenantSet other) {
+		BitSet result = copy();
+		result.xor(other.bits(dictionary));
+		return new TenantSet(dictionary, result);
+	}
+
+	/** The ids of the tenants, backs the set and must not be modified */
+	BitSet ids() {
+		return ids;
+	}
+
+	private BitSet copy() {
+		return (BitSet) ids.clone();
+	}
+
+	private BitSet bits(TenantDictionary expected) {
+		if (dictionary != expected) {
+			throw new IllegalArgumentException("Tenant sets are over different dictionaries");
+		}
+		return ids;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int next = ids.nextSetBit(0);
+			private int last = -1;
+
+			public boolean hasNext() {
+				return next != -1;
+			}
+
+			public String next() {
+				if (next == -1) throw new NoSuchElementException();
+				last = next;
+				next = ids.nextSetBit(next + 1);
+				return dictionary.getTenant(last);
+			}
+
+			public void remove() {
+				if (last == -1) throw new IllegalStateException();
+				ids.clear(last);
+				last = -1;
+			}
+		};
+	}
+
+}
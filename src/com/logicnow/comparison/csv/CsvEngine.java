@@ -0,0 +1,42 @@
+package com.logicnow.comparison.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Reads a CSV file into its header and mapped records in file order. Reading stops
+ * at the first empty line, as the report exports are followed by a summary block.
+ */
+public abstract class CsvEngine {
+
+	public static final String OPENCSV = "opencsv";
+	public static final String MAPPED = "mapped";
+	public static final String PARALLEL = "parallel";
+
+	public abstract <T> Pair<String[], List<T>> read(File file, CsvOptions options, CsvRowMapper<T> mapper) throws IOException;
+
+	public static CsvEngine forName(String name) {
+		if (OPENCSV.equals(name)) return new OpenCsvEngine();
+		if (MAPPED.equals(name)) return new MappedCsvEngine();
+		if (PARALLEL.equals(name)) return new ParallelCsvEngine();
+		throw new IllegalArgumentException("Unsupported CSV engine " + name);
+	}
+
+	/**
+	 * One record of a file as this engine reads it, given its bytes and the
+	 * tokenizer positioned on it. Lets the incremental reader find records with the
+	 * tokenizer and still decode them like a full run does.
+	 */
+	CsvRow decode(MappedCsvTokenizer tokenizer, ByteBuffer buffer, int start, int end, CsvOptions options) throws IOException {
+		return tokenizer;
+	}
+
+	protected static boolean isBlank(CsvRow row) {
+		return row.size() == 1 && "".equals(row.get(0));
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.logicnow.comparison.csv;
+
+import com.opencsv.CSVParser;
+
+/**
+ * Dialect of a source CSV file. Every source is read with opencsv's defaults,
+ * whose escape character is \. The escape character is dropped by the parser and
+ * makes a following quote or escape character literal, so feeds writing embedded
+ * quotes as \" are read as-is without rewriting the file first.
+ */
+public class CsvOptions {
+
+	public static final char NO_ESCAPE = CSVParser.NULL_CHARACTER;
+
+	/** opencsv's defaults, ',' separated, '"' quoted and '\' escaped, used for every source */
+	public static final CsvOptions DEFAULT = new CsvOptions(CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, CSVParser.DEFAULT_ESCAPE_CHARACTER);
+
+	private final char separator;
+	private final char quote;
+	private final char escape;
+
+	public CsvOptions(char separator, char quote, char escape) {
+		this.separator = separator;
+		this.quote = quote;
+		this.escape = escape;
+	}
+
+	public char getSeparator() { return separator; }
+	public char getQuote() { return quote; }
+	public char getEscape() { return escape; }
+	public boolean hasEscape() { return escape != NO_ESCAPE; }
+
+	@Override
+	public String toString() {
+		return (int) separator + "," + (int) quote + "," + (int) escape;
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.logicnow.comparison.csv;
+
+/**
+ * A parsed CSV record. Field values may be decoded on access, callers that only
+ * need some of the fields should read those rather than the whole array.
+ */
+public interface CsvRow {
+
+	int size();
+
+	String get(int index);
+
+	String[] toArray();
+
+}
@@ -0,0 +1,14 @@
+package com.logicnow.comparison.csv;
+
+/**
+ * Converts parsed rows into the records kept by the caller. Engines may call
+ * {@link #map(CsvRow)} from several threads, the header is always supplied first.
+ */
+public interface CsvRowMapper<T> {
+
+	void header(String[] header);
+
+	/** Returns the record for row or null to skip it */
+	T map(CsvRow row);
+
+}
@@ -0,0 +1,110 @@
+package com.logicnow.comparison.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Reads a CSV file against the records of a previous read of the same report.
+ * Every record is fingerprinted with a 64-bit hash of its raw bytes, only records
+ * whose fingerprint was not seen in the previous read are passed to the mapper.
+ * Month-to-date reports mostly repeat the previous day's records, so this only
+ * decodes the new and changed ones. Records are found with the mapped tokenizer,
+ * the header and new records are decoded by the engine a full run would use.
+ */
+public class IncrementalCsvReader {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	public static class Result<T> {
+		private final String[] headers;
+		private final long[] fingerprints;
+		private final int[] previousRows;
+		private final List<T> records;
+
+		Result(String[] headers, long[] fingerprints, int[] previousRows, List<T> records) {
+			this.headers = headers;
+			this.fingerprints = fingerprints;
+			this.previousRows = previousRows;
+			this.records = records;
+		}
+
+		public String[] getHeaders() { return headers; }
+		/** Fingerprint of each record in file order */
+		public long[] getFingerprints() { return fingerprints; }
+		/** Previous row of each record in file order, -1 for records that were mapped */
+		public int[] getPreviousRows() { return previousRows; }
+		/** Mapped records in file order */
+		public List<T> getRecords() { return records; }
+	}
+
+	/**
+	 * Reads the file, records matching one of the previous fingerprints are not
+	 * mapped. Pass an empty array to map every record.
+	 */
+	public static <T> Result<T> read(File file, CsvOptions options, CsvEngine engine, long[] previousFingerprints, CsvRowMapper<T> mapper) throws IOException {
+		// first unmatched previous row of each fingerprint, identical records are matched in order
+		Map<Long, Integer> previous = Maps.newHashMapWithExpectedSize(previousFingerprints.length);
+		int[] nextSame = new int[previousFingerprints.length];
+		for (int row = previousFingerprints.length - 1; row >= 0; row--) {
+			Integer next = previous.put(previousFingerprints[row], row);
+			nextSame[row] = next != null ? next : -1;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = MappedCsvEngine.map(file, channel);
+			List<T> records = Lists.newArrayList();
+			int start = MappedCsvEngine.bomLength(buffer);
+			MappedCsvTokenizer tokenizer = new MappedCsvTokenizer(buffer, start, buffer.limit(), options);
+			if (!tokenizer.next()) return new Result<T>(null, new long[0], new int[0], records);
+			String[] headers = engine.decode(tokenizer, buffer, start, tokenizer.position(), options).toArray();
+			mapper.header(headers);
+			long[] fingerprints = new long[1024];
+			int[] previousRows = new int[1024];
+			int count = 0;
+			start = tokenizer.position();
+			while (tokenizer.next()) {
+				// break at first empty row
+				if (CsvEngine.isBlank(tokenizer)) break;
+				if (count == fingerprints.length) {
+					fingerprints = Arrays.copyOf(fingerprints, count * 2);
+					previousRows = Arrays.copyOf(previousRows, count * 2);
+				}
+				int recordStart = start;
+				start = tokenizer.position();
+				long fingerprint = fingerprint(buffer, recordStart, start);
+				Integer previousRow = previous.get(fingerprint);
+				if (previousRow != null && nextSame[previousRow] >= 0) previous.put(fingerprint, nextSame[previousRow]);
+				if (previousRow == null) {
+					T record = mapper.map(engine.decode(tokenizer, buffer, recordStart, start, options));
+					if (record == null) continue;
+					records.add(record);
+				}
+				fingerprints[count] = fingerprint;
+				previousRows[count] = previousRow != null ? previousRow : -1;
+				count++;
+			}
+			return new Result<T>(headers, Arrays.copyOf(fingerprints, count), Arrays.copyOf(previousRows, count), records);
+		}
+	}
+
+	/** FNV-1a hash of a record's bytes, ignoring its line break */
+	private static long fingerprint(MappedByteBuffer buffer, int start, int end) {
+		while (end > start && (buffer.get(end - 1) == '\n' || buffer.get(end - 1) == '\r')) end--;
+		long hash = FNV_OFFSET;
+		for (int p = start; p < end; p++) {
+			hash ^= buffer.get(p) & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.logicnow.comparison.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Memory maps the file and tokenizes the UTF-8 bytes directly, a field value is
+ * only turned into a String when the mapper reads it.
+ */
+public class MappedCsvEngine extends CsvEngine {
+
+	@Override
+	public <T> Pair<String[], List<T>> read(File file, CsvOptions options, CsvRowMapper<T> mapper) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = map(file, channel);
+			List<T> records = Lists.newArrayList();
+			MappedCsvTokenizer tokenizer = new MappedCsvTokenizer(buffer, bomLength(buffer), buffer.limit(), options);
+			if (!tokenizer.next()) return Pair.of(null, records);
+			String[] headerItems = tokenizer.toArray();
+			mapper.header(headerItems);
+			read(buffer, tokenizer.position(), buffer.limit(), options, mapper, records);
+			return Pair.of(headerItems, records);
+		}
+	}
+
+	/**
+	 * Maps the rows of a byte range starting on a record boundary and reports how
+	 * the range ended.
+	 */
+	protected static <T> RangeEnd read(MappedByteBuffer buffer, int start, int limit, CsvOptions options, CsvRowMapper<T> mapper, List<T> records) {
+		MappedCsvTokenizer tokenizer = new MappedCsvTokenizer(buffer, start, limit, options);
+		while (tokenizer.next()) {
+			// break at first empty row
+			if (isBlank(tokenizer)) {
+				return RangeEnd.EMPTY_ROW;
+			}
+			T record = mapper.map(tokenizer);
+			if (record != null) records.add(record);
+			if (!tokenizer.terminated()) return RangeEnd.UNTERMINATED;
+		}
+		return RangeEnd.LINE_BREAK;
+	}
+
+	protected enum RangeEnd { LINE_BREAK, EMPTY_ROW, UNTERMINATED }
+
+	protected static MappedByteBuffer map(File file, FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("CSV file [" + file.getAbsolutePath() + "] is too large to be mapped, use the " + OPENCSV + " engine");
+		}
+		return channel.map(MapMode.READ_ONLY, 0, size);
+	}
+
+	protected static int bomLength(MappedByteBuffer buffer) {
+		if (buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+			return 3;
+		}
+		return 0;
+	}
+
+}
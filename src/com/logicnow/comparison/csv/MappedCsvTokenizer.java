@@ -0,0 +1,282 @@
+package com.logicnow.comparison.csv;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Tokenizes UTF-8 CSV bytes in place. Each call to {@link #next()} only records the
+ * field boundaries of the following record, field values are decoded when read.
+ * Separators, quotes, escapes and line breaks are ASCII so they are matched on the
+ * raw bytes without decoding. Quotes and escapes follow opencsv's parser state by
+ * state, so a quote that is not at the start or end of a value is kept where
+ * opencsv keeps it, and whitespace before such a quote is dropped. Line breaks inside quoted values are returned as \n and the
+ * escape character is dropped, as opencsv does.
+ */
+class MappedCsvTokenizer implements CsvRow {
+
+	// parser state between bytes, as opencsv keeps it
+	static final int OUTSIDE = 0;
+	static final int IN_QUOTES = 1;
+	// opencsv's inField: set by a value character, toggled by a quote, cleared by a separator
+	static final int IN_FIELD = 2;
+	// the byte is an escaped quote or escape character
+	static final int LITERAL = 4;
+
+	// no following byte on the line
+	static final int NONE = Integer.MIN_VALUE;
+
+	private static final int PLAIN = 0;
+	private static final int QUOTED = 1;
+	private static final int COMPLEX = 2;
+
+	/**
+	 * The transitions of opencsv's parser on a single byte. Shared by the tokenizer
+	 * and the boundary scan of {@link ParallelCsvEngine} so both read quotes alike.
+	 */
+	static class Syntax {
+		private final byte separator;
+		private final byte quote;
+		private final byte escape;
+		private final boolean escapes;
+
+		Syntax(CsvOptions options) {
+			this.separator = (byte) options.getSeparator();
+			this.quote = (byte) options.getQuote();
+			this.escape = (byte) options.getEscape();
+			this.escapes = options.hasEscape();
+		}
+
+		/**
+		 * State after byte c, following being the next byte or {@link #NONE}. A
+		 * separator or line break outside quotes ends the value.
+		 */
+		int advance(int state, byte c, int following) {
+			if ((state & LITERAL) != 0) return state & ~LITERAL;
+			boolean inField = (state & (IN_QUOTES | IN_FIELD)) != 0;
+			if (escapes && c == escape) {
+				return inField && (following == quote || following == escape) ? state | LITERAL : state;
+			}
+			if (c == quote) {
+				if (inField && following == quote) return (state ^ IN_FIELD) | LITERAL;
+				return state ^ IN_QUOTES ^ IN_FIELD;
+			}
+			if (c == separator || c == '\n' || c == '\r') {
+				if ((state & IN_QUOTES) == 0) return OUTSIDE;
+				if (c != separator) return state;
+			}
+			return state | IN_FIELD;
+		}
+
+		/**
+		 * True if the value read so far is not empty and only whitespace. opencsv
+		 * ignores leading whitespace by clearing such a value where it would keep a
+		 * quote, so {@code a, "b, c"} reads as {@code b, c}. The quote still opens or
+		 * closes quoting, so the transitions are unchanged.
+		 */
+		static boolean isWhitespace(byte[] value, int length) {
+			if (length == 0) return false;
+			for (int i = 0; i < length; i++) {
+				if (value[i] < 0) return StringUtils.isWhitespace(new String(value, 0, length, StandardCharsets.UTF_8));
+				if (!Character.isWhitespace(value[i])) return false;
+			}
+			return true;
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final int limit;
+	private final Syntax syntax;
+	private final byte separator;
+	private final byte quote;
+	private final byte escape;
+	private final boolean escapes;
+
+	private int pos;
+	private int recordStart;
+	private boolean terminated;
+	private int count;
+	private int[] starts = new int[64];
+	private int[] ends = new int[64];
+	private int[] kinds = new int[64];
+	private byte[] scratch = new byte[256];
+
+	MappedCsvTokenizer(ByteBuffer buffer, int start, int limit, CsvOptions options) {
+		this.buffer = buffer.duplicate();
+		this.pos = start;
+		this.limit = limit;
+		this.syntax = new Syntax(options);
+		this.separator = (byte) options.getSeparator();
+		this.quote = (byte) options.getQuote();
+		this.escape = (byte) options.getEscape();
+		this.escapes = options.hasEscape();
+	}
+
+	/** Offset of the byte following the current record */
+	int position() { return pos; }
+
+	/** True when the current record ended with a line break rather than the end of the range */
+	boolean terminated() { return terminated; }
+
+	/** Advances to the next record, returns false at the end of the range */
+	boolean next() {
+		if (pos >= limit) return false;
+		count = 0;
+		recordStart = pos;
+		int p = pos;
+		int fieldStart = p;
+		int quotes = 0;
+		boolean complex = false;
+		int state = OUTSIDE;
+		while (p < limit) {
+			byte c = buffer.get(p);
+			if ((state & IN_QUOTES) == 0) {
+				if (c == separator) {
+					addField(fieldStart, p, quotes, complex);
+					fieldStart = ++p;
+					quotes = 0;
+					complex = false;
+					state = OUTSIDE;
+					continue;
+				}
+				if (c == '\n' || c == '\r') {
+					addField(fieldStart, p, quotes, complex);
+					p++;
+					if (c == '\r' && p < limit && buffer.get(p) == '\n') p++;
+					pos = p;
+					terminated = true;
+					return true;
+				}
+			}
+			if (c == quote) {
+				quotes++;
+			} else if ((escapes && c == escape) || c == '\r') {
+				complex = true;
+			}
+			state = syntax.advance(state, c, p + 1 < limit ? buffer.get(p + 1) : NONE);
+			p++;
+		}
+		pos = limit;
+		terminated = false;
+		// opencsv drops a value still quoted at the end of the file
+		if ((state & IN_QUOTES) != 0 && limit == buffer.limit()) return count > 0;
+		addField(fieldStart, limit, quotes, complex);
+		return true;
+	}
+
+	private void addField(int start, int end, int quotes, boolean complex) {
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+			ends = Arrays.copyOf(ends, count * 2);
+			kinds = Arrays.copyOf(kinds, count * 2);
+		}
+		int kind = COMPLEX;
+		if (!complex) {
+			if (quotes == 0) {
+				kind = PLAIN;
+			} else if (quotes == 2 && end - start >= 2 && buffer.get(start) == quote && buffer.get(end - 1) == quote) {
+				kind = QUOTED;
+				start++;
+				end--;
+			}
+		}
+		starts[count] = start;
+		ends[count] = end;
+		kinds[count] = kind;
+		count++;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public String get(int index) {
+		if (index >= count) throw new ArrayIndexOutOfBoundsException(index);
+		int start = starts[index];
+		int end = ends[index];
+		if (start == end) return "";
+		int length = kinds[index] == COMPLEX ? unescape(start, end) : copy(start, end);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String[] toArray() {
+		String[] items = new String[count];
+		for (int i = 0; i < count; i++) {
+			items[i] = get(i);
+		}
+		return items;
+	}
+
+	private int copy(int start, int end) {
+		int length = end - start;
+		ensureScratch(length);
+		((Buffer) buffer).position(start);
+		buffer.get(scratch, 0, length);
+		return length;
+	}
+
+	private int unescape(int start, int end) {
+		ensureScratch(end - start);
+		int length = 0;
+		int state = OUTSIDE;
+		int lineStart = -1;
+		for (int p = start; p < end; p++) {
+			byte c = buffer.get(p);
+			int following = p + 1 < limit ? buffer.get(p + 1) : NONE;
+			int next = syntax.advance(state, c, following);
+			if ((state & LITERAL) != 0) {
+				scratch[length++] = c;
+			} else if (c == quote) {
+				if ((next & LITERAL) == 0) {
+					if (lineStart == -1) lineStart = lineStart(start);
+					if (keepsQuote(lineStart, p, following)) {
+						if (Syntax.isWhitespace(scratch, length)) length = 0;
+						else scratch[length++] = c;
+					}
+				}
+			} else if (c == '\n' || c == '\r') {
+				scratch[length++] = '\n';
+				if (c == '\r' && following == '\n') p++;
+				lineStart = p + 1;
+			} else if (!escapes || c != escape) {
+				scratch[length++] = c;
+			}
+			state = next;
+		}
+		return length;
+	}
+
+	/**
+	 * opencsv keeps a quote that opens or closes quoting unless it is among the first
+	 * three characters of its line or next to a separator or the end of the line.
+	 */
+	private boolean keepsQuote(int lineStart, int p, int following) {
+		if (following == NONE || following == separator || following == '\n' || following == '\r') return false;
+		// UTF-16 characters before the quote on its line, counting stops at three
+		int chars = 0;
+		for (int q = lineStart; q < p && chars < 3; q++) {
+			int b = buffer.get(q) & 0xff;
+			if ((b & 0xc0) != 0x80) chars += b >= 0xf0 ? 2 : 1;
+		}
+		return chars >= 3 && buffer.get(p - 1) != separator;
+	}
+
+	/** Offset of the line holding p within the current record */
+	private int lineStart(int p) {
+		while (p > recordStart && buffer.get(p - 1) != '\n' && buffer.get(p - 1) != '\r') p--;
+		return p;
+	}
+
+	private void ensureScratch(int length) {
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.logicnow.comparison.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.google.common.collect.Lists;
+import com.opencsv.CSVReader;
+
+/**
+ * Streams the file through opencsv, every field of every row is decoded.
+ */
+public class OpenCsvEngine extends CsvEngine {
+
+	@Override
+	public <T> Pair<String[], List<T>> read(File file, CsvOptions options, CsvRowMapper<T> mapper) throws IOException {
+		return read(new FileInputStream(file), options, mapper);
+	}
+
+	public <T> Pair<String[], List<T>> read(InputStream in, CsvOptions options, CsvRowMapper<T> mapper) throws IOException {
+		List<T> records = Lists.newArrayList();
+		String[] headerItems = null;
+		Reader input = new BufferedReader(new InputStreamReader(new BOMInputStream(in), "UTF-8"));
+		try (CSVReader reader = new CSVReader(input, options.getSeparator(), options.getQuote(), options.getEscape())) {
+			headerItems = reader.readNext();
+			if (headerItems == null) return Pair.of(null, records);
+			mapper.header(headerItems);
+			ArrayRow row = new ArrayRow();
+			String[] lineItems;
+			while ((lineItems = reader.readNext()) != null) {
+				row.items = lineItems;
+				// break at first empty row
+				if (isBlank(row)) {
+					break;
+				}
+				T record = mapper.map(row);
+				if (record != null) records.add(record);
+			}
+		}
+		return Pair.of(headerItems, records);
+	}
+
+	@Override
+	CsvRow decode(MappedCsvTokenizer tokenizer, ByteBuffer buffer, int start, int end, CsvOptions options) throws IOException {
+		byte[] bytes = new byte[end - start];
+		ByteBuffer record = buffer.duplicate();
+		((Buffer) record).position(start);
+		record.get(bytes);
+		Reader input = new StringReader(new String(bytes, StandardCharsets.UTF_8));
+		try (CSVReader reader = new CSVReader(input, options.getSeparator(), options.getQuote(), options.getEscape())) {
+			ArrayRow row = new ArrayRow();
+			row.items = reader.readNext();
+			if (row.items == null) throw new IOException("No record in bytes " + start + " to " + end);
+			return row;
+		}
+	}
+
+	private static class ArrayRow implements CsvRow {
+		private String[] items;
+		public int size() { return items.length; }
+		public String get(int index) { return items[index]; }
+		public String[] toArray() { return items; }
+	}
+
+}
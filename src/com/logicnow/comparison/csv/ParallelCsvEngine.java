@@ -0,0 +1,203 @@
+package com.logicnow.comparison.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Memory maps the file, splits it into byte ranges that start on record boundaries
+ * and parses the ranges on a fork-join pool. Rows are returned in file order.
+ * <p>
+ * Boundaries are found in two passes: each range is scanned with the tokenizer's
+ * transitions from every state a line can start in, outside quotes or inside a
+ * quoted value, remembering the state it ends in and its first record boundary.
+ * Chaining the end states then tells whether a range starts inside a quoted value,
+ * in which case it starts at that first boundary instead. Every range except the
+ * last must end on a line break; if one does not the file is parsed sequentially.
+ */
+public class ParallelCsvEngine extends MappedCsvEngine {
+
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+
+	private final ForkJoinPool pool;
+	private final int minChunkSize;
+
+	public ParallelCsvEngine() {
+		this(ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+	}
+
+	public ParallelCsvEngine(ForkJoinPool pool, int minChunkSize) {
+		this.pool = pool;
+		this.minChunkSize = minChunkSize;
+	}
+
+	@Override
+	public <T> Pair<String[], List<T>> read(File file, CsvOptions options, CsvRowMapper<T> mapper) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = map(file, channel);
+			MappedCsvTokenizer tokenizer = new MappedCsvTokenizer(buffer, bomLength(buffer), buffer.limit(), options);
+			if (!tokenizer.next()) return Pair.of(null, Lists.<T>newArrayList());
+			String[] headerItems = tokenizer.toArray();
+			mapper.header(headerItems);
+			int[] bounds = findBoundaries(buffer, tokenizer.position(), buffer.limit(), options);
+			List<T> records = parse(buffer, bounds, options, mapper);
+			if (records == null) {
+				records = Lists.newArrayList();
+				read(buffer, tokenizer.position(), buffer.limit(), options, mapper, records);
+			}
+			return Pair.of(headerItems, records);
+		}
+	}
+
+	int[] findBoundaries(MappedByteBuffer buffer, int start, int limit, CsvOptions options) {
+		int chunks = Math.min(pool.getParallelism() * 4, (limit - start) / minChunkSize);
+		if (chunks < 2) return new int[] { start, limit };
+		// nominal split points, moved past the next line break so no range starts mid escape
+		int chunkSize = (limit - start) / chunks;
+		int[] splits = new int[chunks + 1];
+		splits[0] = start;
+		splits[chunks] = limit;
+		for (int i = 1; i < chunks; i++) {
+			splits[i] = Math.max(splits[i - 1], afterLineBreak(buffer, start + i * chunkSize, limit));
+		}
+		List<ScanTask> scans = Lists.newArrayList();
+		for (int i = 0; i < chunks; i++) {
+			scans.add(new ScanTask(buffer, splits[i], splits[i + 1], options));
+		}
+		invokeAll(scans);
+		// move ranges that begin inside a quoted value to their first record boundary
+		List<Integer> bounds = Lists.newArrayList(start);
+		int state = MappedCsvTokenizer.OUTSIDE;
+		for (int i = 0; i < chunks; i++) {
+			ScanTask scan = scans.get(i);
+			int from = ScanTask.indexOf(state);
+			if (i > 0) {
+				int bound = from == 0 ? splits[i] : scan.boundaries[from];
+				if (bound > bounds.get(bounds.size() - 1) && bound < limit) bounds.add(bound);
+			}
+			state = scan.ends[from];
+		}
+		bounds.add(limit);
+		int[] result = new int[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	private <T> List<T> parse(MappedByteBuffer buffer, int[] bounds, CsvOptions options, CsvRowMapper<T> mapper) {
+		List<ParseTask<T>> tasks = Lists.newArrayList();
+		for (int i = 0; i + 1 < bounds.length; i++) {
+			tasks.add(new ParseTask<T>(buffer, bounds[i], bounds[i + 1], options, mapper));
+		}
+		invokeAll(tasks);
+		List<T> records = Lists.newArrayList();
+		for (int i = 0; i < tasks.size(); i++) {
+			ParseTask<T> task = tasks.get(i);
+			records.addAll(task.records);
+			if (task.end == RangeEnd.EMPTY_ROW) break;
+			if (task.end == RangeEnd.UNTERMINATED && i < tasks.size() - 1) return null;
+		}
+		return records;
+	}
+
+	private void invokeAll(List<? extends ForkJoinTask<?>> tasks) {
+		for (ForkJoinTask<?> task : tasks) {
+			pool.execute(task);
+		}
+		for (ForkJoinTask<?> task : tasks) {
+			task.join();
+		}
+	}
+
+	private static int afterLineBreak(MappedByteBuffer buffer, int from, int limit) {
+		for (int p = from; p < limit; p++) {
+			if (buffer.get(p) == '\n') return p + 1;
+		}
+		return limit;
+	}
+
+	private static class ScanTask extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+		// states a line can start in: outside quotes, or inside a quoted value with opencsv's inField unset or set
+		private static final int[] STARTS = { MappedCsvTokenizer.OUTSIDE, MappedCsvTokenizer.IN_QUOTES, MappedCsvTokenizer.IN_QUOTES | MappedCsvTokenizer.IN_FIELD };
+		private final MappedByteBuffer buffer;
+		private final int start;
+		private final int limit;
+		private final CsvOptions options;
+		// by start state, the state at the end of the range and the offset after its first record
+		private final int[] ends = STARTS.clone();
+		private final int[] boundaries = { -1, -1, -1 };
+
+		ScanTask(MappedByteBuffer buffer, int start, int limit, CsvOptions options) {
+			this.buffer = buffer;
+			this.start = start;
+			this.limit = limit;
+			this.options = options;
+		}
+
+		static int indexOf(int state) {
+			if ((state & MappedCsvTokenizer.IN_QUOTES) == 0) return 0;
+			return (state & MappedCsvTokenizer.IN_FIELD) == 0 ? 1 : 2;
+		}
+
+		@Override
+		protected Void compute() {
+			MappedCsvTokenizer.Syntax syntax = new MappedCsvTokenizer.Syntax(options);
+			// the two quoted starts agree once a value character sets inField
+			int scanned = STARTS.length;
+			for (int p = start; p < limit; p++) {
+				byte c = buffer.get(p);
+				int following = p + 1 < limit ? buffer.get(p + 1) : MappedCsvTokenizer.NONE;
+				for (int s = 0; s < scanned; s++) {
+					if (boundaries[s] == -1 && (c == '\n' || c == '\r') && (ends[s] & MappedCsvTokenizer.IN_QUOTES) == 0) {
+						boundaries[s] = c == '\r' && following == '\n' ? p + 2 : p + 1;
+					}
+					ends[s] = syntax.advance(ends[s], c, following);
+				}
+				if (scanned == 3 && ends[1] == ends[2] && boundaries[1] == boundaries[2]) scanned = 2;
+			}
+			if (scanned == 2) {
+				ends[2] = ends[1];
+				boundaries[2] = boundaries[1];
+			}
+			return null;
+		}
+	}
+
+	private static class ParseTask<T> extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+		private final MappedByteBuffer buffer;
+		private final int start;
+		private final int limit;
+		private final CsvOptions options;
+		private final CsvRowMapper<T> mapper;
+		private final List<T> records = Lists.newArrayList();
+		private RangeEnd end;
+
+		ParseTask(MappedByteBuffer buffer, int start, int limit, CsvOptions options, CsvRowMapper<T> mapper) {
+			this.buffer = buffer;
+			this.start = start;
+			this.limit = limit;
+			this.options = options;
+			this.mapper = mapper;
+		}
+
+		@Override
+		protected Void compute() {
+			end = read(buffer, start, limit, options, mapper, records);
+			return null;
+		}
+	}
+
+}
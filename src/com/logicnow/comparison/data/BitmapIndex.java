@@ -0,0 +1,91 @@
+package com.logicnow.comparison.data;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Secondary index of a column: the distinct values of the column, each with a
+ * bitmap of the rows holding it. A filter on the column is answered by the
+ * union of the bitmaps of the values it matches, without visiting the rows.
+ */
+public class BitmapIndex {
+
+	/** Columns with more distinct values are not indexed */
+	public static final int MAX_VALUES = 1024;
+
+	private final String[] values;
+	private final BitSet[] rows;
+	private final int size;
+
+	private BitmapIndex(String[] values, BitSet[] rows, int size) {
+		this.values = values;
+		this.rows = rows;
+		this.size = size;
+	}
+
+	/**
+	 * Indexes the column, returns null if it has more than {@link #MAX_VALUES}
+	 * distinct values.
+	 */
+	static BitmapIndex of(Column column) {
+		int size = column.size();
+		Dictionary dictionary = column.getDictionary();
+		if (dictionary != null) {
+			if (dictionary.size() > MAX_VALUES) return null;
+			String[] values = new String[dictionary.size()];
+			BitSet[] rows = new BitSet[values.length];
+			for (int code = 0; code < values.length; code++) {
+				values[code] = dictionary.getValue(code);
+				rows[code] = new BitSet(size);
+			}
+			for (int row = 0; row < size; row++) {
+				rows[column.getCode(row)].set(row);
+			}
+			return new BitmapIndex(values, rows, size);
+		}
+		// distinct values are counted first, so a column that does not qualify allocates no bitmaps
+		Map<String, Integer> codes = Maps.newLinkedHashMap();
+		for (int row = 0; row < size; row++) {
+			String value = column.getString(row);
+			if (!codes.containsKey(value)) {
+				if (codes.size() == MAX_VALUES) return null;
+				codes.put(value, codes.size());
+			}
+		}
+		String[] values = codes.keySet().toArray(new String[codes.size()]);
+		BitSet[] rows = new BitSet[values.length];
+		for (int code = 0; code < values.length; code++) {
+			rows[code] = new BitSet(size);
+		}
+		for (int row = 0; row < size; row++) {
+			rows[codes.get(column.getString(row))].set(row);
+		}
+		return new BitmapIndex(values, rows, size);
+	}
+
+	/** Number of rows of the indexed column */
+	public int size() {
+		return size;
+	}
+
+	/** Rows holding the value, the returned bitmap is a copy */
+	public BitSet get(String value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equals(value)) return (BitSet) rows[i].clone();
+		}
+		return new BitSet(size);
+	}
+
+	/** Rows whose value matches, the union of the bitmaps of the matching values */
+	public BitSet select(Predicate<String> matches) {
+		BitSet selected = new BitSet(size);
+		for (int i = 0; i < values.length; i++) {
+			if (matches.test(values[i])) selected.or(rows[i]);
+		}
+		return selected;
+	}
+
+}
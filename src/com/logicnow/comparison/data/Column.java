@@ -0,0 +1,135 @@
+package com.logicnow.comparison.data;
+
+import java.util.BitSet;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Values of one dataset column. Typed columns keep their source text so every
+ * column can be read as a string, the typed accessors avoid re-parsing it.
+ */
+public abstract class Column {
+
+	public static final long NO_DATE = Long.MIN_VALUE;
+
+	private BitmapIndex index;
+	private boolean indexed;
+	private Map<String, BitSet> equalRows;
+
+	public abstract int size();
+
+	public abstract String getString(int row);
+
+	public ColumnType getType() {
+		return ColumnType.STRING;
+	}
+
+	public boolean valueEquals(int row, String value) {
+		return getString(row).equals(value);
+	}
+
+	public boolean isBlank(int row) {
+		return getString(row).isEmpty();
+	}
+
+	/** Integer value of a non blank row, decimals are truncated */
+	public int getInt(int row) {
+		String item = getString(row);
+		if (item.indexOf(".") > -1) {
+			// parse as a double in case we have trailing decimals then convert
+			return (int) Double.parseDouble(item);
+		}
+		return Integer.parseInt(item);
+	}
+
+	/** True when the row holds a value {@link #getInt(int)} can read */
+	public boolean hasInt(int row) {
+		if (isBlank(row)) return false;
+		try {
+			getInt(row);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/** Epoch millis of the row's date or {@link #NO_DATE} if it is not a date */
+	public long getMillis(int row) {
+		return Dates.parseMillis(getString(row));
+	}
+
+	/** Dictionary of an encoded column or null if the column is not encoded */
+	public Dictionary getDictionary() {
+		return null;
+	}
+
+	/** Dictionary code of the row's value, only supported by encoded columns */
+	public int getCode(int row) {
+		throw new UnsupportedOperationException("Column is not dictionary encoded");
+	}
+
+	/**
+	 * Bitmap index of the column's values, built on first use. Null if the column
+	 * has too many distinct values to index.
+	 */
+	public synchronized BitmapIndex getIndex() {
+		if (!indexed) {
+			index = BitmapIndex.of(this);
+			indexed = true;
+		}
+		return index;
+	}
+
+	/** True once {@link #getIndex()} has been built */
+	public synchronized boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * Rows for which {@link #valueEquals(int, String)} holds, computed on first use
+	 * of the value. The bitmap is shared and must not be modified.
+	 */
+	public synchronized BitSet getRowsEqual(String value) {
+		if (equalRows == null) equalRows = Maps.newHashMap();
+		BitSet rows = equalRows.get(value);
+		if (rows == null) {
+			rows = rowsEqual(value);
+			equalRows.put(value, rows);
+		}
+		return rows;
+	}
+
+	protected BitSet rowsEqual(String value) {
+		BitSet rows = new BitSet(size());
+		Dictionary dictionary = getDictionary();
+		if (dictionary != null) {
+			int code = dictionary.codeOf(value);
+			if (code == -1) return rows;
+			for (int row = 0; row < size(); row++) {
+				if (getCode(row) == code) rows.set(row);
+			}
+			return rows;
+		}
+		for (int row = 0; row < size(); row++) {
+			if (valueEquals(row, value)) rows.set(row);
+		}
+		return rows;
+	}
+
+	/** View of the given rows of this column */
+	public Column select(int[] rows) {
+		return new SelectedColumn(this, rows);
+	}
+
+	/** Copy of this column stored as the given type */
+	public Column toType(ColumnType type) {
+		if (type == getType()) return this;
+		switch (type) {
+		case INTEGER: return IntColumn.of(this);
+		case DATE: return DateColumn.of(this);
+		default: return StringColumn.of(this);
+		}
+	}
+
+}
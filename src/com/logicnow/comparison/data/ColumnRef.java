@@ -0,0 +1,46 @@
+package com.logicnow.comparison.data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle of a named column. The name is resolved against a dataset's headers
+ * once and the position is kept by the dataset, reads through the handle are then
+ * direct column reads. A handle holds no dataset, so it can be a constant.
+ */
+public final class ColumnRef {
+
+	private static final AtomicInteger SLOTS = new AtomicInteger();
+
+	private final String name;
+	private final int slot;
+
+	private ColumnRef(String name) {
+		this.name = name;
+		this.slot = SLOTS.getAndIncrement();
+	}
+
+	public static ColumnRef of(String name) {
+		return new ColumnRef(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** Position of the handle's resolved column in a dataset's cache */
+	int slot() {
+		return slot;
+	}
+
+	/** The referenced column of the dataset, null if the dataset has none */
+	public Column in(Dataset data) {
+		return data.getColumn(this);
+	}
+
+	/** The row's value, null if the dataset has no such column */
+	public String getString(Dataset data, int row) {
+		Column column = in(data);
+		return column != null ? column.getString(row) : null;
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.logicnow.comparison.data;
+
+public enum ColumnType {
+
+	STRING, INTEGER, DATE;
+
+	/** Storage type for a config coltype, "strip" and other formatting types are stored as strings */
+	public static ColumnType forColType(String coltype) {
+		if ("integer".equals(coltype)) return INTEGER;
+		if ("date".equals(coltype)) return DATE;
+		return STRING;
+	}
+
+}
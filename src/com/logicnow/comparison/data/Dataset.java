@@ -0,0 +1,175 @@
+package com.logicnow.comparison.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Column oriented table of CSV data. Every column holds one value per row, typed
+ * columns are parsed once when the dataset is built. Projections and row
+ * selections are views sharing the underlying column values.
+ */
+public class Dataset {
+
+	private final String[] headers;
+	private final Column[] columns;
+	private final int size;
+	private volatile Map<String, Integer> positions;
+	// position of the column of each resolved ColumnRef by slot, UNRESOLVED until read
+	private volatile int[] refPositions = new int[0];
+
+	private static final int UNRESOLVED = -2;
+
+	public Dataset(String[] headers, Column[] columns, int size) {
+		this.headers = headers;
+		this.columns = columns;
+		this.size = size;
+	}
+
+	/**
+	 * Builds a dataset from parsed rows, columns named in types are stored as that type.
+	 * Short rows are padded with blank values. String columns with few distinct values
+	 * are dictionary encoded, sharing one copy of each value across the dataset.
+	 */
+	public static Dataset of(String[] headers, List<String[]> rows, Map<String, ColumnType> types) {
+		if (headers == null) headers = new String[0];
+		Map<String, String> pool = Maps.newHashMap();
+		Column[] columns = new Column[headers.length];
+		for (int c = 0; c < headers.length; c++) {
+			String[] values = new String[rows.size()];
+			for (int r = 0; r < values.length; r++) {
+				String[] row = rows.get(r);
+				values[r] = c < row.length ? row[c] : "";
+			}
+			ColumnType type = types != null ? types.get(headers[c]) : null;
+			Column column = type != ColumnType.INTEGER ? DictionaryColumn.encode(values, pool) : null;
+			if (column == null) column = new StringColumn(values);
+			columns[c] = type != null ? column.toType(type) : column;
+		}
+		return new Dataset(headers, columns, rows.size());
+	}
+
+	/**
+	 * Dataset of rows taken from a previous dataset and an added dataset with the
+	 * same headers, see {@link MergedColumn} for how sources address rows.
+	 */
+	public static Dataset merge(Dataset previous, Dataset added, int[] sources) {
+		if (!Arrays.equals(previous.headers, added.headers)) throw new IllegalArgumentException("Merged datasets must have the same headers");
+		Column[] merged = new Column[previous.columns.length];
+		for (int c = 0; c < merged.length; c++) {
+			merged[c] = new MergedColumn(previous.columns[c], added.columns[c], sources);
+		}
+		return new Dataset(previous.headers, merged, sources.length);
+	}
+
+	public String[] getHeaders() { return headers; }
+
+	public int size() { return size; }
+
+	/** Position of the first column with the header, -1 if there is none */
+	public int indexOf(String header) {
+		Map<String, Integer> positions = this.positions;
+		if (positions == null) {
+			positions = Maps.newHashMapWithExpectedSize(headers.length);
+			for (int c = headers.length - 1; c >= 0; c--) {
+				positions.put(headers[c], c);
+			}
+			this.positions = positions;
+		}
+		Integer index = positions.get(header);
+		return index != null ? index : -1;
+	}
+
+	public Column getColumn(int index) {
+		return columns[index];
+	}
+
+	/** Column with the given header or null if there is none */
+	public Column getColumn(String header) {
+		int index = indexOf(header);
+		return index != -1 ? columns[index] : null;
+	}
+
+	/** Column the handle refers to or null if there is none, resolved once per dataset */
+	public Column getColumn(ColumnRef ref) {
+		int slot = ref.slot();
+		int[] refPositions = this.refPositions;
+		if (slot >= refPositions.length) {
+			int length = refPositions.length;
+			refPositions = Arrays.copyOf(refPositions, Math.max(slot + 1, length * 2));
+			Arrays.fill(refPositions, length, refPositions.length, UNRESOLVED);
+			this.refPositions = refPositions;
+		}
+		int index = refPositions[slot];
+		if (index == UNRESOLVED) {
+			index = indexOf(ref.getName());
+			refPositions[slot] = index;
+		}
+		return index != -1 ? columns[index] : null;
+	}
+
+	public String getString(int row, int column) {
+		return columns[column].getString(row);
+	}
+
+	public String[] getRow(int row) {
+		String[] items = new String[columns.length];
+		for (int c = 0; c < columns.length; c++) {
+			items[c] = columns[c].getString(row);
+		}
+		return items;
+	}
+
+	/** View of the given columns in the given order */
+	public Dataset project(int[] indexes) {
+		String[] projectedHeaders = new String[indexes.length];
+		Column[] projected = new Column[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			projectedHeaders[i] = headers[indexes[i]];
+			projected[i] = columns[indexes[i]];
+		}
+		return new Dataset(projectedHeaders, projected, size);
+	}
+
+	/** View of the rows set in the bitmap */
+	public Dataset select(BitSet rows) {
+		return rows.cardinality() == size ? this : select(rows.stream().toArray());
+	}
+
+	/** View of the given rows in the given order */
+	public Dataset select(int[] rows) {
+		Column[] selected = new Column[columns.length];
+		for (int c = 0; c < columns.length; c++) {
+			selected[c] = columns[c].select(rows);
+		}
+		return new Dataset(headers, selected, rows.length);
+	}
+
+	/** This dataset with a column appended */
+	public Dataset withColumn(String header, Column column) {
+		if (column.size() != size) throw new IllegalArgumentException("Column [" + header + "] has " + column.size() + " rows, expected " + size);
+		return new Dataset(ArrayUtils.add(headers, header), ArrayUtils.add(columns, column), size);
+	}
+
+	/**
+	 * This dataset with the named columns stored as the given types, returns this
+	 * dataset when every column already has its type.
+	 */
+	public Dataset withColumnTypes(Map<String, ColumnType> types) {
+		Column[] typed = null;
+		for (int c = 0; c < headers.length; c++) {
+			ColumnType type = types.get(headers[c]);
+			if (type != null && type != columns[c].getType()) {
+				if (typed == null) typed = Arrays.copyOf(columns, columns.length);
+				typed[c] = columns[c].toType(type);
+			}
+		}
+		return typed != null ? new Dataset(headers, typed, size) : this;
+	}
+
+}
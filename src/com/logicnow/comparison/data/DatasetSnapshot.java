@@ -0,0 +1,270 @@
+package com.logicnow.comparison.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Binary snapshot of a parsed dataset, stored next to its CSV file. A snapshot is
+ * keyed by a hash of the CSV content plus a signature of how it was parsed, so it
+ * is only reused for the same file read the same way. Loading memory maps the
+ * snapshot: numeric and code arrays are copied out in bulk and plain string
+ * columns are decoded from the mapping when read.
+ * <p>
+ * Layout, big endian: magic, version, key, row count, column count, then for each
+ * column its header and type tag followed by the column data, then the optional
+ * row fingerprints used by incremental loads.
+ */
+public class DatasetSnapshot {
+
+	public static final String SUFFIX = ".snapshot";
+
+	private static final int MAGIC = 0x54524453;
+	private static final int VERSION = 2;
+
+	private static final byte STRING = 0;
+	private static final byte DICTIONARY = 1;
+	private static final byte INTEGER = 2;
+	private static final byte DATE = 3;
+
+	private final Dataset dataset;
+	private final long[] fingerprints;
+
+	public DatasetSnapshot(Dataset dataset, long[] fingerprints) {
+		this.dataset = dataset;
+		this.fingerprints = fingerprints;
+	}
+
+	public Dataset getDataset() { return dataset; }
+	/** Fingerprint of each row or null if the snapshot has none */
+	public long[] getFingerprints() { return fingerprints; }
+
+	public static File getFile(File csv) {
+		return new File(csv.getParentFile(), csv.getName() + SUFFIX);
+	}
+
+	/**
+	 * Key of the CSV file's current content read with the given signature.
+	 */
+	public static String key(File csv, String signature) throws IOException {
+		return Files.hash(csv, Hashing.sha256()).toString() + "|" + signature;
+	}
+
+	/**
+	 * Loads the CSV file's snapshot, returns null if there is none for the key or it
+	 * cannot be read.
+	 */
+	public static Dataset load(File csv, String key) throws IOException {
+		DatasetSnapshot snapshot = read(getFile(csv), key);
+		return snapshot != null ? snapshot.getDataset() : null;
+	}
+
+	/**
+	 * Writes the dataset's snapshot, replacing any previous snapshot of the CSV file.
+	 */
+	public static void write(File csv, String key, Dataset data) throws IOException {
+		write(getFile(csv), key, new DatasetSnapshot(data, null));
+	}
+
+	/**
+	 * Reads a snapshot file, returns null if it does not exist, was written with
+	 * another key or cannot be read.
+	 */
+	public static DatasetSnapshot read(File file, String key) throws IOException {
+		if (!file.exists()) return null;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+			if (!key.equals(readString(buffer))) return null;
+			int size = buffer.getInt();
+			String[] headers = new String[buffer.getInt()];
+			Column[] columns = new Column[headers.length];
+			for (int c = 0; c < headers.length; c++) {
+				headers[c] = readString(buffer);
+				columns[c] = readColumn(buffer, size);
+			}
+			long[] fingerprints = null;
+			if (buffer.get() == 1) {
+				fingerprints = new long[size];
+				buffer.asLongBuffer().get(fingerprints);
+			}
+			return new DatasetSnapshot(new Dataset(headers, columns, size), fingerprints);
+		} catch (BufferUnderflowException | IllegalStateException e) {
+			System.out.println("Ignoring unreadable snapshot [" + file.getAbsolutePath() + "]: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a snapshot file, replacing any previous one.
+	 */
+	public static void write(File file, String key, DatasetSnapshot snapshot) throws IOException {
+		Dataset data = snapshot.getDataset();
+		file.getParentFile().mkdirs();
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, key);
+			out.writeInt(data.size());
+			out.writeInt(data.getHeaders().length);
+			for (int c = 0; c < data.getHeaders().length; c++) {
+				writeString(out, data.getHeaders()[c]);
+				writeColumn(out, data.getColumn(c));
+			}
+			out.writeByte(snapshot.getFingerprints() != null ? 1 : 0);
+			if (snapshot.getFingerprints() != null) {
+				for (long fingerprint : snapshot.getFingerprints()) {
+					out.writeLong(fingerprint);
+				}
+			}
+		}
+		java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writeColumn(DataOutputStream out, Column column) throws IOException {
+		int size = column.size();
+		column = materialize(column);
+		if (column instanceof DictionaryColumn) {
+			Dictionary dictionary = column.getDictionary();
+			out.writeByte(DICTIONARY);
+			out.writeInt(dictionary.size());
+			for (int i = 0; i < dictionary.size(); i++) {
+				writeString(out, dictionary.getValue(i));
+			}
+			for (char code : ((DictionaryColumn) column).codes()) {
+				out.writeChar(code);
+			}
+		} else if (column instanceof IntColumn) {
+			IntColumn ints = (IntColumn) column;
+			out.writeByte(INTEGER);
+			for (int value : ints.values()) {
+				out.writeInt(value);
+			}
+			out.write(ints.kinds());
+			out.writeInt(ints.text().size());
+			for (Map.Entry<Integer, String> text : ints.text().entrySet()) {
+				out.writeInt(text.getKey());
+				writeString(out, text.getValue());
+			}
+		} else if (column instanceof DateColumn) {
+			DateColumn dates = (DateColumn) column;
+			out.writeByte(DATE);
+			writeColumn(out, dates.text());
+			for (long millis : dates.millis()) {
+				out.writeLong(millis);
+			}
+		} else {
+			// offsets of each value followed by the UTF-8 bytes of all values
+			out.writeByte(STRING);
+			byte[][] values = new byte[size][];
+			int offset = 0;
+			out.writeInt(offset);
+			for (int row = 0; row < size; row++) {
+				values[row] = column.getString(row).getBytes(StandardCharsets.UTF_8);
+				offset += values[row].length;
+				out.writeInt(offset);
+			}
+			for (byte[] value : values) {
+				out.write(value);
+			}
+		}
+	}
+
+	/** Stored form of a view column, typed columns keep their type and text is re-encoded */
+	private static Column materialize(Column column) {
+		if (column instanceof DictionaryColumn || column instanceof IntColumn || column instanceof DateColumn || column instanceof StringColumn) {
+			return column;
+		}
+		switch (column.getType()) {
+		case INTEGER: return IntColumn.of(column);
+		case DATE: return DateColumn.of(column);
+		default:
+			StringColumn strings = StringColumn.of(column);
+			DictionaryColumn encoded = DictionaryColumn.encode(strings.values(), Maps.newHashMap());
+			return encoded != null ? encoded : strings;
+		}
+	}
+
+	private static Column readColumn(ByteBuffer buffer, int size) {
+		byte type = buffer.get();
+		switch (type) {
+		case DICTIONARY: {
+			String[] values = new String[buffer.getInt()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = readString(buffer);
+			}
+			char[] codes = new char[size];
+			buffer.asCharBuffer().get(codes);
+			skip(buffer, size * 2);
+			return new DictionaryColumn(new Dictionary(values), codes);
+		}
+		case INTEGER: {
+			int[] values = new int[size];
+			buffer.asIntBuffer().get(values);
+			skip(buffer, size * 4);
+			byte[] kinds = new byte[size];
+			buffer.get(kinds);
+			int count = buffer.getInt();
+			Map<Integer, String> text = Maps.newHashMapWithExpectedSize(count);
+			for (int i = 0; i < count; i++) {
+				text.put(buffer.getInt(), readString(buffer));
+			}
+			return new IntColumn(values, kinds, text);
+		}
+		case DATE: {
+			Column text = readColumn(buffer, size);
+			long[] millis = new long[size];
+			buffer.asLongBuffer().get(millis);
+			skip(buffer, size * 8);
+			return new DateColumn(text, millis);
+		}
+		case STRING: {
+			IntBuffer offsets = buffer.slice().asIntBuffer();
+			((Buffer) offsets).limit(size + 1);
+			int length = offsets.get(size);
+			skip(buffer, (size + 1) * 4);
+			ByteBuffer bytes = buffer.slice();
+			((Buffer) bytes).limit(length);
+			skip(buffer, length);
+			return new MappedStringColumn(bytes, offsets);
+		}
+		default:
+			throw new IllegalStateException("Unknown snapshot column type " + type);
+		}
+	}
+
+	private static void skip(ByteBuffer buffer, int length) {
+		((Buffer) buffer).position(buffer.position() + length);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.logicnow.comparison.data;
+
+/**
+ * Date column, each value is parsed once into epoch millis alongside its text.
+ */
+public class DateColumn extends Column {
+
+	private final Column text;
+	private final long[] millis;
+
+	DateColumn(Column text, long[] millis) {
+		this.text = text;
+		this.millis = millis;
+	}
+
+	/**
+	 * Parses the column's text, the column's format is detected once and each
+	 * distinct value is only parsed once.
+	 */
+	public static DateColumn of(Column column) {
+		long[] millis = new long[column.size()];
+		Dates.Parser parser = new Dates.Parser();
+		Dictionary dictionary = column.getDictionary();
+		if (dictionary != null) {
+			long[] codes = new long[dictionary.size()];
+			for (int code = 0; code < codes.length; code++) {
+				codes[code] = parser.parse(dictionary.getValue(code));
+			}
+			for (int i = 0; i < millis.length; i++) {
+				millis[i] = codes[column.getCode(i)];
+			}
+		} else {
+			for (int i = 0; i < millis.length; i++) {
+				millis[i] = parser.parse(column.getString(i));
+			}
+		}
+		return new DateColumn(column, millis);
+	}
+
+	@Override
+	public int size() {
+		return millis.length;
+	}
+
+	@Override
+	public ColumnType getType() {
+		return ColumnType.DATE;
+	}
+
+	@Override
+	public String getString(int row) {
+		return text.getString(row);
+	}
+
+	@Override
+	public long getMillis(int row) {
+		return millis[row];
+	}
+
+	Column text() { return text; }
+	long[] millis() { return millis; }
+
+}
@@ -0,0 +1,158 @@
+package com.logicnow.comparison.data;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalField;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Parses the dates found in the source files into epoch millis in the default
+ * time zone, {@link Column#NO_DATE} for values that are not dates. Values are
+ * matched against the formats in order and, like the SimpleDateFormats these
+ * replace, may carry trailing text and have out of range fields roll over.
+ * The formatters are immutable so parsing is thread safe, and parsed values are
+ * cached as source files repeat the same dates many times.
+ */
+public final class Dates {
+
+	private static final ZoneId ZONE = ZoneId.systemDefault();
+	private static final int CACHE_SIZE = 100000;
+	private static final Map<String, Long> CACHE = new ConcurrentHashMap<>();
+
+	public enum Format {
+
+		/** Amarillo timestamps, yyyy-MM-dd HH:mm:ss.fffffff */
+		DATE_TIME("uuuu-MM-dd HH:mm:ss.SSSSSSS", new DateTimeFormatterBuilder()
+				.appendValue(ChronoField.YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('-')
+				.appendValue(ChronoField.MONTH_OF_YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('-')
+				.appendValue(ChronoField.DAY_OF_MONTH, 1, 9, SignStyle.NORMAL).appendLiteral(' ')
+				.appendValue(ChronoField.HOUR_OF_DAY, 1, 9, SignStyle.NORMAL).appendLiteral(':')
+				.appendValue(ChronoField.MINUTE_OF_HOUR, 1, 9, SignStyle.NORMAL).appendLiteral(':')
+				.appendValue(ChronoField.SECOND_OF_MINUTE, 1, 9, SignStyle.NORMAL)
+				.appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true)
+				.toFormatter()),
+		/** yyyy-MM-dd */
+		DATE("uuuu-MM-dd", new DateTimeFormatterBuilder()
+				.appendValue(ChronoField.YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('-')
+				.appendValue(ChronoField.MONTH_OF_YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('-')
+				.appendValue(ChronoField.DAY_OF_MONTH, 1, 9, SignStyle.NORMAL)
+				.toFormatter()),
+		/** SFDC report dates, MM/dd/yyyy */
+		US_DATE("MM/dd/uuuu", new DateTimeFormatterBuilder()
+				.appendValue(ChronoField.MONTH_OF_YEAR, 1, 9, SignStyle.NORMAL).appendLiteral('/')
+				.appendValue(ChronoField.DAY_OF_MONTH, 1, 9, SignStyle.NORMAL).appendLiteral('/')
+				.appendValue(ChronoField.YEAR, 1, 9, SignStyle.NORMAL)
+				.toFormatter());
+
+		private final DateTimeFormatter printer;
+		private final DateTimeFormatter parser;
+
+		private Format(String pattern, DateTimeFormatter parser) {
+			this.printer = DateTimeFormatter.ofPattern(pattern);
+			this.parser = parser;
+		}
+
+		/**
+		 * Parses the start of the text, or all of it if whole is set. Returns
+		 * {@link Column#NO_DATE} if the text is not in this format.
+		 */
+		public long parse(String text, boolean whole) {
+			ParsePosition position = new ParsePosition(0);
+			TemporalAccessor parsed = parser.parseUnresolved(text, position);
+			if (parsed == null || (whole && position.getIndex() != text.length())) return Column.NO_DATE;
+			try {
+				LocalDateTime time = LocalDate.of((int) parsed.getLong(ChronoField.YEAR), 1, 1)
+						.plusMonths(parsed.getLong(ChronoField.MONTH_OF_YEAR) - 1)
+						.plusDays(parsed.getLong(ChronoField.DAY_OF_MONTH) - 1)
+						.atStartOfDay()
+						.plusHours(get(parsed, ChronoField.HOUR_OF_DAY))
+						.plusMinutes(get(parsed, ChronoField.MINUTE_OF_HOUR))
+						.plusSeconds(get(parsed, ChronoField.SECOND_OF_MINUTE))
+						.plusNanos(get(parsed, ChronoField.NANO_OF_SECOND));
+				return time.atZone(ZONE).toInstant().toEpochMilli();
+			} catch (DateTimeException | ArithmeticException e) {
+				// rolled over beyond the supported range
+				return Column.NO_DATE;
+			}
+		}
+
+		public String format(long millis) {
+			return printer.format(Instant.ofEpochMilli(millis).atZone(ZONE));
+		}
+
+		private static long get(TemporalAccessor parsed, TemporalField field) {
+			return parsed.isSupported(field) ? parsed.getLong(field) : 0;
+		}
+	}
+
+	private Dates() { }
+
+	/**
+	 * Epoch millis of the text's date, {@link Column#NO_DATE} if it is not a date.
+	 */
+	public static long parseMillis(String text) {
+		if (text == null) return Column.NO_DATE;
+		Long millis = CACHE.get(text);
+		if (millis == null) {
+			millis = parse(text);
+			if (CACHE.size() < CACHE_SIZE) CACHE.put(text, millis);
+		}
+		return millis;
+	}
+
+	private static long parse(String text) {
+		for (Format format : Format.values()) {
+			long millis = format.parse(text, false);
+			if (millis != Column.NO_DATE) return millis;
+		}
+		return Column.NO_DATE;
+	}
+
+	/**
+	 * Parser for the values of one column. The format of the first date found is
+	 * tried first for the following values, which is only trusted when it reads
+	 * the whole value: formats earlier in order cannot then match. Each distinct
+	 * value is parsed once. Not thread safe.
+	 */
+	public static class Parser {
+		private final Map<String, Long> parsed = Maps.newHashMap();
+		private Format detected;
+
+		public long parse(String text) {
+			Long millis = parsed.get(text);
+			if (millis == null) {
+				millis = detect(text);
+				parsed.put(text, millis);
+			}
+			return millis;
+		}
+
+		private long detect(String text) {
+			if (detected != null) {
+				long millis = detected.parse(text, true);
+				if (millis != Column.NO_DATE) return millis;
+			}
+			for (Format format : Format.values()) {
+				long millis = format.parse(text, false);
+				if (millis != Column.NO_DATE) {
+					detected = format;
+					return millis;
+				}
+			}
+			return Column.NO_DATE;
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.logicnow.comparison.data;
+
+import java.util.function.IntFunction;
+
+/**
+ * Virtual column whose values are derived from other columns of the same rows.
+ * A row's value is computed on first read and kept, so attaching the column to
+ * a dataset copies no rows and rows that are never read are never derived.
+ * A null value is not kept and is derived again when read. Derivation may run
+ * more than once for a row read concurrently and must give the same value.
+ */
+public class DerivedColumn extends Column {
+
+	private final IntFunction<String> derivation;
+	private final String[] values;
+
+	public DerivedColumn(int size, IntFunction<String> derivation) {
+		this.derivation = derivation;
+		this.values = new String[size];
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public String getString(int row) {
+		String value = values[row];
+		if (value == null) {
+			value = derivation.apply(row);
+			values[row] = value;
+		}
+		return value;
+	}
+
+}
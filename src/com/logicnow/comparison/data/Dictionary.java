@@ -0,0 +1,59 @@
+package com.logicnow.comparison.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Distinct values of a dictionary encoded column, each value is held once and
+ * referenced by its code. Values derived from a code with a mapping function
+ * are computed once per code.
+ */
+public class Dictionary {
+
+	private final String[] values;
+	private final Map<String, Integer> codes;
+	private final Map<Function<String, String>, String[]> mappings = new ConcurrentHashMap<>();
+
+	Dictionary(String[] values) {
+		this.values = values;
+		this.codes = Maps.newHashMapWithExpectedSize(values.length);
+		for (int i = 0; i < values.length; i++) {
+			codes.put(values[i], i);
+		}
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	public String getValue(int code) {
+		return values[code];
+	}
+
+	/** Code of the value or -1 if it is not in the dictionary */
+	public int codeOf(String value) {
+		Integer code = codes.get(value);
+		return code != null ? code : -1;
+	}
+
+	/**
+	 * The mapping of the code's value, mapped values are interned so comparing
+	 * them is usually a reference check.
+	 */
+	public String getMapped(int code, Function<String, String> mapping) {
+		String[] mapped = mappings.get(mapping);
+		if (mapped == null) {
+			mapped = new String[values.length];
+			for (int i = 0; i < values.length; i++) {
+				String value = mapping.apply(values[i]);
+				mapped[i] = value != null ? value.intern() : null;
+			}
+			mappings.put(mapping, mapped);
+		}
+		return mapped[code];
+	}
+
+}
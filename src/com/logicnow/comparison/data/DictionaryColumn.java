@@ -0,0 +1,75 @@
+package com.logicnow.comparison.data;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * String column storing a two byte dictionary code per row, used for columns
+ * with few distinct values such as products, territories and flags.
+ */
+public class DictionaryColumn extends Column {
+
+	public static final int MAX_CODES = Character.MAX_VALUE + 1;
+
+	private final Dictionary dictionary;
+	private final char[] codes;
+
+	DictionaryColumn(Dictionary dictionary, char[] codes) {
+		this.dictionary = dictionary;
+		this.codes = codes;
+	}
+
+	/**
+	 * Encodes the values if they have at most one distinct value per two rows,
+	 * otherwise returns null. Dictionary values are taken from the pool so columns
+	 * sharing a pool share their strings.
+	 */
+	public static DictionaryColumn encode(String[] values, Map<String, String> pool) {
+		int limit = Math.min(MAX_CODES, Math.max(values.length / 2, 1));
+		Map<String, Integer> codes = Maps.newHashMap();
+		List<String> distinct = Lists.newArrayList();
+		char[] encoded = new char[values.length];
+		for (int i = 0; i < values.length; i++) {
+			Integer code = codes.get(values[i]);
+			if (code == null) {
+				if (distinct.size() == limit) return null;
+				code = distinct.size();
+				String value = pool.get(values[i]);
+				if (value == null) {
+					value = values[i];
+					pool.put(value, value);
+				}
+				codes.put(value, code);
+				distinct.add(value);
+			}
+			encoded[i] = (char) code.intValue();
+		}
+		return new DictionaryColumn(new Dictionary(distinct.toArray(new String[distinct.size()])), encoded);
+	}
+
+	@Override
+	public int size() {
+		return codes.length;
+	}
+
+	@Override
+	public String getString(int row) {
+		return dictionary.getValue(codes[row]);
+	}
+
+	@Override
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	@Override
+	public int getCode(int row) {
+		return codes[row];
+	}
+
+	char[] codes() { return codes; }
+
+}
@@ -0,0 +1,110 @@
+package com.logicnow.comparison.data;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Integer column. Values are parsed once, the source text is only kept for rows
+ * where it differs from the integer's canonical form (blanks, decimals, text).
+ */
+public class IntColumn extends Column {
+
+	private static final byte INT = 0;
+	private static final byte BLANK = 1;
+	private static final byte NUMBER = 2;
+	private static final byte TEXT = 3;
+
+	private final int[] values;
+	private final byte[] kinds;
+	private final Map<Integer, String> text;
+
+	IntColumn(int[] values, byte[] kinds, Map<Integer, String> text) {
+		this.values = values;
+		this.kinds = kinds;
+		this.text = text;
+	}
+
+	public static IntColumn of(int[] values) {
+		return new IntColumn(values, new byte[values.length], Maps.newHashMap());
+	}
+
+	public static IntColumn of(Column column) {
+		int size = column.size();
+		int[] values = new int[size];
+		byte[] kinds = new byte[size];
+		Map<Integer, String> text = Maps.newHashMap();
+		for (int i = 0; i < size; i++) {
+			String item = column.getString(i);
+			if (item.isEmpty()) {
+				kinds[i] = BLANK;
+				continue;
+			}
+			try {
+				values[i] = item.indexOf(".") > -1 ? (int) Double.parseDouble(item) : Integer.parseInt(item);
+				kinds[i] = Integer.toString(values[i]).equals(item) ? INT : NUMBER;
+			} catch (NumberFormatException e) {
+				kinds[i] = TEXT;
+			}
+			if (kinds[i] != INT) text.put(i, item);
+		}
+		return new IntColumn(values, kinds, text);
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public ColumnType getType() {
+		return ColumnType.INTEGER;
+	}
+
+	@Override
+	public String getString(int row) {
+		switch (kinds[row]) {
+		case INT: return Integer.toString(values[row]);
+		case BLANK: return "";
+		default: return text.get(row);
+		}
+	}
+
+	@Override
+	public boolean valueEquals(int row, String value) {
+		if (kinds[row] == INT) {
+			// canonical text only equals canonical text
+			return value.length() > 0 && value.length() <= 11 && isCanonical(value) && values[row] == Integer.parseInt(value);
+		}
+		return getString(row).equals(value);
+	}
+
+	@Override
+	public boolean isBlank(int row) {
+		return kinds[row] == BLANK;
+	}
+
+	@Override
+	public boolean hasInt(int row) {
+		return kinds[row] == INT || kinds[row] == NUMBER;
+	}
+
+	@Override
+	public int getInt(int row) {
+		if (!hasInt(row)) throw new NumberFormatException("For input string: \"" + getString(row) + "\"");
+		return values[row];
+	}
+
+	int[] values() { return values; }
+	byte[] kinds() { return kinds; }
+	Map<Integer, String> text() { return text; }
+
+	private static boolean isCanonical(String value) {
+		try {
+			return Integer.toString(Integer.parseInt(value)).equals(value);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.logicnow.comparison.data;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * String column read from a memory mapped snapshot, values are decoded when read.
+ */
+class MappedStringColumn extends Column {
+
+	private final ByteBuffer bytes;
+	private final IntBuffer offsets;
+
+	MappedStringColumn(ByteBuffer bytes, IntBuffer offsets) {
+		this.bytes = bytes;
+		this.offsets = offsets;
+	}
+
+	@Override
+	public int size() {
+		return offsets.limit() - 1;
+	}
+
+	@Override
+	public String getString(int row) {
+		int start = offsets.get(row);
+		byte[] value = new byte[offsets.get(row + 1) - start];
+		ByteBuffer buffer = bytes.duplicate();
+		((Buffer) buffer).position(start);
+		buffer.get(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public boolean isBlank(int row) {
+		return offsets.get(row) == offsets.get(row + 1);
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.logicnow.comparison.data;
+
+/**
+ * Rows taken from a previous and an added column. A source of n >= 0 is row n of
+ * the previous column, a source of -1 - n is row n of the added column.
+ */
+class MergedColumn extends Column {
+
+	private final Column previous;
+	private final Column added;
+	private final int[] sources;
+
+	MergedColumn(Column previous, Column added, int[] sources) {
+		this.previous = previous;
+		this.added = added;
+		this.sources = sources;
+	}
+
+	@Override
+	public int size() {
+		return sources.length;
+	}
+
+	@Override
+	public ColumnType getType() {
+		return previous.getType();
+	}
+
+	private Column column(int row) {
+		return sources[row] >= 0 ? previous : added;
+	}
+
+	private int row(int row) {
+		int source = sources[row];
+		return source >= 0 ? source : -1 - source;
+	}
+
+	@Override
+	public String getString(int row) {
+		return column(row).getString(row(row));
+	}
+
+	@Override
+	public boolean valueEquals(int row, String value) {
+		return column(row).valueEquals(row(row), value);
+	}
+
+	@Override
+	public boolean isBlank(int row) {
+		return column(row).isBlank(row(row));
+	}
+
+	@Override
+	public int getInt(int row) {
+		return column(row).getInt(row(row));
+	}
+
+	@Override
+	public boolean hasInt(int row) {
+		return column(row).hasInt(row(row));
+	}
+
+	@Override
+	public long getMillis(int row) {
+		return column(row).getMillis(row(row));
+	}
+
+}
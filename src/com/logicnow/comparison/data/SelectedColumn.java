@@ -0,0 +1,88 @@
+package com.logicnow.comparison.data;
+
+import java.util.BitSet;
+
+/**
+ * Rows of another column, selected by their row number in that column.
+ */
+class SelectedColumn extends Column {
+
+	private final Column column;
+	private final int[] rows;
+
+	SelectedColumn(Column column, int[] rows) {
+		this.column = column;
+		this.rows = rows;
+	}
+
+	@Override
+	public int size() {
+		return rows.length;
+	}
+
+	@Override
+	public ColumnType getType() {
+		return column.getType();
+	}
+
+	@Override
+	public String getString(int row) {
+		return column.getString(rows[row]);
+	}
+
+	@Override
+	public boolean valueEquals(int row, String value) {
+		return column.valueEquals(rows[row], value);
+	}
+
+	@Override
+	public boolean isBlank(int row) {
+		return column.isBlank(rows[row]);
+	}
+
+	@Override
+	public int getInt(int row) {
+		return column.getInt(rows[row]);
+	}
+
+	@Override
+	public boolean hasInt(int row) {
+		return column.hasInt(rows[row]);
+	}
+
+	@Override
+	public long getMillis(int row) {
+		return column.getMillis(rows[row]);
+	}
+
+	@Override
+	public Dictionary getDictionary() {
+		return column.getDictionary();
+	}
+
+	@Override
+	public int getCode(int row) {
+		return column.getCode(rows[row]);
+	}
+
+	@Override
+	protected BitSet rowsEqual(String value) {
+		// derived from the selected column's rows, which other selections share
+		BitSet equal = column.getRowsEqual(value);
+		BitSet selected = new BitSet(rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			if (equal.get(rows[i])) selected.set(i);
+		}
+		return selected;
+	}
+
+	@Override
+	public Column select(int[] selected) {
+		int[] composed = new int[selected.length];
+		for (int i = 0; i < selected.length; i++) {
+			composed[i] = rows[selected[i]];
+		}
+		return new SelectedColumn(column, composed);
+	}
+
+}
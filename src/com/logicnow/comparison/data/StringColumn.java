@@ -0,0 +1,31 @@
+package com.logicnow.comparison.data;
+
+public class StringColumn extends Column {
+
+	private final String[] values;
+
+	public StringColumn(String[] values) {
+		this.values = values;
+	}
+
+	public static StringColumn of(Column column) {
+		String[] values = new String[column.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = column.getString(i);
+		}
+		return new StringColumn(values);
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public String getString(int row) {
+		return values[row];
+	}
+
+	String[] values() { return values; }
+
+}
@@ -0,0 +1,85 @@
+package com.logicnow.comparison.filter;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.logicnow.comparison.data.Column;
+
+/**
+ * Rows and tenants a config filter removed. A row is removed by the filter alone
+ * if no other filter rejects it, a tenant if one of its rows is: without the
+ * filter the tenant would be kept. Rows and tenants rejected by other filters as
+ * well were removed together with them.
+ */
+public class FilterImpact {
+
+	private final String filter;
+	private final int rowsAlone;
+	private final int rowsTogether;
+	private final Set<String> tenantsAlone;
+	private final Set<String> tenantsTogether;
+
+	public FilterImpact(String filter, int rowsAlone, int rowsTogether, Set<String> tenantsAlone, Set<String> tenantsTogether) {
+		this.filter = filter;
+		this.rowsAlone = rowsAlone;
+		this.rowsTogether = rowsTogether;
+		this.tenantsAlone = tenantsAlone;
+		this.tenantsTogether = tenantsTogether;
+	}
+
+	/**
+	 * Attributes the rejected rows of each filter, given in the order of the
+	 * filters, to the filters. Tenants are read from the tenants column.
+	 */
+	public static List<FilterImpact> attribute(List<String> filters, BitSet[] rejected, Column tenants) {
+		// rows rejected by any filter and by more than one
+		BitSet any = new BitSet();
+		BitSet multiple = new BitSet();
+		for (BitSet rows : rejected) {
+			BitSet both = (BitSet) any.clone();
+			both.and(rows);
+			multiple.or(both);
+			any.or(rows);
+		}
+		Set<String> kept = Sets.newHashSet();
+		for (int row = any.nextClearBit(0); row < tenants.size(); row = any.nextClearBit(row + 1)) {
+			kept.add(tenants.getString(row));
+		}
+		List<FilterImpact> impacts = Lists.newArrayList();
+		for (int f = 0; f < rejected.length; f++) {
+			BitSet alone = (BitSet) rejected[f].clone();
+			alone.andNot(multiple);
+			BitSet together = (BitSet) rejected[f].clone();
+			together.and(multiple);
+			Set<String> tenantsAlone = removedTenants(alone, tenants, kept);
+			Set<String> tenantsTogether = removedTenants(together, tenants, kept);
+			tenantsTogether.removeAll(tenantsAlone);
+			impacts.add(new FilterImpact(filters.get(f), alone.cardinality(), together.cardinality(), tenantsAlone, tenantsTogether));
+		}
+		return impacts;
+	}
+
+	private static Set<String> removedTenants(BitSet rows, Column tenants, Set<String> kept) {
+		Set<String> removed = Sets.newHashSet();
+		for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+			String tenant = tenants.getString(row);
+			if (tenant != null && !kept.contains(tenant)) removed.add(tenant);
+		}
+		return removed;
+	}
+
+	/** The filter as shown in the config's description */
+	public String getFilter() { return filter; }
+	/** Rows no other filter rejects */
+	public int getRowsAlone() { return rowsAlone; }
+	/** Rows other filters reject as well */
+	public int getRowsTogether() { return rowsTogether; }
+	/** Tenants that would be kept without this filter */
+	public Set<String> getTenantsAlone() { return tenantsAlone; }
+	/** Tenants that other filters would remove as well */
+	public Set<String> getTenantsTogether() { return tenantsTogether; }
+
+}
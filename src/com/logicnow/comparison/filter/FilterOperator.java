@@ -0,0 +1,47 @@
+package com.logicnow.comparison.filter;
+
+/**
+ * Operators of config filters, by the symbol used in the config file.
+ */
+public enum FilterOperator {
+
+	EQUALS("="),
+	STARTS_WITH("startsWith"),
+	ENDS_WITH("endsWith"),
+	LESS("<"),
+	GREATER(">"),
+	LESS_EQUAL("<="),
+	GREATER_EQUAL(">="),
+	IN("in"),
+	NOT_IN("notIn"),
+	MATCHES("matches"),
+	CONTAINS_ANY("containsAny");
+
+	private final String symbol;
+
+	private FilterOperator(String symbol) {
+		this.symbol = symbol;
+	}
+
+	public String getSymbol() {
+		return symbol;
+	}
+
+	/** True for the operators comparing dates */
+	public boolean isDate() {
+		return this == LESS || this == GREATER || this == LESS_EQUAL || this == GREATER_EQUAL;
+	}
+
+	/** True for the operators taking a list of values */
+	public boolean isList() {
+		return this == IN || this == NOT_IN || this == CONTAINS_ANY;
+	}
+
+	public static FilterOperator forSymbol(String symbol) {
+		for (FilterOperator operator : values()) {
+			if (operator.symbol.equals(symbol)) return operator;
+		}
+		throw new RuntimeException("Unsupported filter operand " + symbol);
+	}
+
+}
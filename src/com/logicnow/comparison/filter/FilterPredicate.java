@@ -0,0 +1,126 @@
+package com.logicnow.comparison.filter;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableSet;
+
+import com.logicnow.comparison.ComparatorConfig;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.Dates;
+import com.logicnow.comparison.data.Dictionary;
+import com.logicnow.comparison.utils.CompUtils;
+
+/**
+ * A config filter compiled for evaluation: the operator is resolved once and the
+ * date of a date filter, including $START_DATE and $END_DATE, is parsed once.
+ * Values of in and notIn are hashed, a matches filter's regex is compiled and the
+ * values of containsAny are built into one automaton.
+ * Matching a row allocates nothing for stored typed or encoded columns.
+ */
+public class FilterPredicate {
+
+	private final String column;
+	private final FilterOperator operator;
+	private final String expected;
+	private final long expectedMillis;
+	private final List<String> operands;
+	private final Set<String> values;
+	private final Pattern pattern;
+	private final MultiPatternMatcher matcher;
+
+	private FilterPredicate(String column, FilterOperator operator, String expected, long expectedMillis, List<String> values) {
+		this.column = column;
+		this.operator = operator;
+		this.expected = expected;
+		this.expectedMillis = expectedMillis;
+		this.operands = values;
+		this.values = operator == FilterOperator.IN || operator == FilterOperator.NOT_IN ? ImmutableSet.copyOf(values) : null;
+		this.pattern = operator == FilterOperator.MATCHES ? Pattern.compile(expected) : null;
+		this.matcher = operator == FilterOperator.CONTAINS_ANY ? new MultiPatternMatcher(values, false) : null;
+	}
+
+	/**
+	 * Compiles a filter of the config, given as column, operand and expected value,
+	 * or the expected values of a list operand. The config's dates must be set.
+	 */
+	public static FilterPredicate compile(ComparatorConfig config, String[] f) {
+		FilterOperator operator = FilterOperator.forSymbol(f[1]);
+		if (f.length != 3 && !operator.isList()) throw new RuntimeException("Filter operand " + f[1] + " takes a single value");
+		long expectedMillis = Column.NO_DATE;
+		if (operator.isDate()) {
+			Date date = f[2].startsWith("$") ? CompUtils.getVarDate(config, f[2]) : CompUtils.parseDate(f[2]);
+			if (date != null) expectedMillis = date.getTime();
+		}
+		List<String> values = Arrays.asList(f).subList(2, f.length);
+		return new FilterPredicate(f[0], operator, f.length > 2 ? f[2] : null, expectedMillis, values);
+	}
+
+	public String getColumn() { return column; }
+	public FilterOperator getOperator() { return operator; }
+	public String getExpected() { return expected; }
+
+	/**
+	 * Key equal for predicates matching the same values of a column, date
+	 * operands are compared by their resolved date.
+	 */
+	public String getKey() {
+		return column + '\0' + operator.getSymbol() + '\0' + (operator.isDate() ? String.valueOf(expectedMillis) : operands.toString());
+	}
+
+	public boolean matches(Column column, int row) {
+		switch (operator) {
+		case EQUALS: return column.valueEquals(row, expected);
+		case STARTS_WITH: return column.getString(row).startsWith(expected);
+		case ENDS_WITH: return column.getString(row).endsWith(expected);
+		case IN: case NOT_IN: case MATCHES: case CONTAINS_ANY: return matches(column.getString(row));
+		default: return dateMatches(column.getMillis(row));
+		}
+	}
+
+	/**
+	 * Matches a field's source text, gives the same result as matching the field
+	 * once it is stored.
+	 */
+	public boolean matches(String value) {
+		switch (operator) {
+		case EQUALS: return value.equals(expected);
+		case STARTS_WITH: return value.startsWith(expected);
+		case ENDS_WITH: return value.endsWith(expected);
+		case IN: return values.contains(value);
+		case NOT_IN: return !values.contains(value);
+		case MATCHES: return pattern.matcher(value).matches();
+		case CONTAINS_ANY: return matcher.containsAny(value);
+		default: return dateMatches(Dates.parseMillis(value));
+		}
+	}
+
+	/**
+	 * Result of the predicate for each code of the dictionary, or null if the
+	 * predicate does not only depend on an encoded column's text.
+	 */
+	public boolean[] matchesCodes(Dictionary dictionary) {
+		if (operator.isDate()) return null;
+		boolean[] matches = new boolean[dictionary.size()];
+		for (int code = 0; code < matches.length; code++) {
+			matches[code] = matches(dictionary.getValue(code));
+		}
+		return matches;
+	}
+
+	private boolean dateMatches(long millis) {
+		// Assume this is only used with dates, rows without a date never match
+		if (millis == Column.NO_DATE || expectedMillis == Column.NO_DATE) return false;
+		int compare = Long.compare(millis, expectedMillis);
+		switch (operator) {
+		case LESS: return compare < 0;
+		case GREATER: return compare > 0;
+		case LESS_EQUAL: return compare <= 0;
+		default: return compare >= 0;
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.logicnow.comparison.filter;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Aho-Corasick automaton finding whether a text contains any of a set of
+ * patterns. The text is scanned once whatever the number of patterns.
+ */
+public class MultiPatternMatcher {
+
+	private final boolean ignoreCase;
+	private final List<Map<Character, Integer>> transitions = Lists.newArrayList();
+	private final List<Integer> failures = Lists.newArrayList();
+	private final List<Boolean> terminal = Lists.newArrayList();
+
+	public MultiPatternMatcher(Collection<String> patterns, boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+		addState();
+		for (String pattern : patterns) {
+			int state = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				char c = normalize(pattern.charAt(i));
+				Integer next = transitions.get(state).get(c);
+				if (next == null) {
+					next = addState();
+					transitions.get(state).put(c, next);
+				}
+				state = next;
+			}
+			terminal.set(state, true);
+		}
+		// breadth first, a state's failure is the longest proper suffix that is a prefix of some pattern
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int next : transitions.get(0).values()) {
+			queue.add(next);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+				int next = transition.getValue();
+				int failure = failures.get(state);
+				while (failure > 0 && !transitions.get(failure).containsKey(transition.getKey())) {
+					failure = failures.get(failure);
+				}
+				Integer target = transitions.get(failure).get(transition.getKey());
+				failure = target != null && target != next ? target : 0;
+				failures.set(next, failure);
+				if (terminal.get(failure)) terminal.set(next, true);
+				queue.add(next);
+			}
+		}
+	}
+
+	private int addState() {
+		transitions.add(Maps.<Character, Integer>newHashMap());
+		failures.add(0);
+		terminal.add(false);
+		return transitions.size() - 1;
+	}
+
+	private char normalize(char c) {
+		return ignoreCase ? Character.toLowerCase(c) : c;
+	}
+
+	/** True if the text contains at least one of the patterns */
+	public boolean containsAny(String text) {
+		if (terminal.get(0)) return true;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = normalize(text.charAt(i));
+			Integer next = transitions.get(state).get(c);
+			while (next == null && state > 0) {
+				state = failures.get(state);
+				next = transitions.get(state).get(c);
+			}
+			state = next != null ? next : 0;
+			if (terminal.get(state)) return true;
+		}
+		return false;
+	}
+
+}
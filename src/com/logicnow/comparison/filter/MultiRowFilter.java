@@ -0,0 +1,131 @@
+package com.logicnow.comparison.filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.logicnow.comparison.ExecutionPlan;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.Dataset;
+
+/**
+ * The filters of several configs compiled against views of the same rows. The
+ * product configs of a run repeat many filters, each distinct filter on a column
+ * is compiled once and evaluated at most once per row, and the rows of every
+ * config are selected in a single scan.
+ */
+public class MultiRowFilter {
+
+	private final RowFilter.Predicate[] predicates;
+	private final int[][] include;
+	private final int[][] exclude;
+
+	private MultiRowFilter(RowFilter.Predicate[] predicates, int[][] include, int[][] exclude) {
+		this.predicates = predicates;
+		this.include = include;
+		this.exclude = exclude;
+	}
+
+	/**
+	 * Binds the filters of each plan to the dataset projected by the plan. The
+	 * datasets must have the same rows.
+	 */
+	public static MultiRowFilter compile(List<ExecutionPlan> plans, List<Dataset> data) {
+		List<RowFilter.Predicate> predicates = Lists.newArrayList();
+		Map<Column, Map<String, Integer>> distinct = Maps.newHashMap();
+		int[][] include = new int[plans.size()][];
+		int[][] exclude = new int[plans.size()][];
+		for (int c = 0; c < include.length; c++) {
+			RowFilter filter = RowFilter.compile(plans.get(c), data.get(c));
+			include[c] = distinct(filter.include, predicates, distinct);
+			exclude[c] = distinct(filter.exclude, predicates, distinct);
+		}
+		return new MultiRowFilter(predicates.toArray(new RowFilter.Predicate[predicates.size()]), include, exclude);
+	}
+
+	private static int[] distinct(RowFilter.Predicate[] compiled, List<RowFilter.Predicate> predicates, Map<Column, Map<String, Integer>> distinct) {
+		int[] indexes = new int[compiled.length];
+		for (int i = 0; i < compiled.length; i++) {
+			Map<String, Integer> columnPredicates = distinct.get(compiled[i].column);
+			if (columnPredicates == null) {
+				columnPredicates = Maps.newHashMap();
+				distinct.put(compiled[i].column, columnPredicates);
+			}
+			Integer index = columnPredicates.get(compiled[i].predicate.getKey());
+			if (index == null) {
+				index = predicates.size();
+				predicates.add(compiled[i]);
+				columnPredicates.put(compiled[i].predicate.getKey(), index);
+			}
+			indexes[i] = index;
+		}
+		return indexes;
+	}
+
+	/** Number of distinct filters of all the configs */
+	public int getDistinctCount() {
+		return predicates.length;
+	}
+
+	/**
+	 * Bitmap of the rows each config's filters accept, in the order of the configs.
+	 * Predicates on indexed columns are answered once from the index, the others
+	 * are evaluated in one scan over the rows any config may still accept.
+	 */
+	public List<BitSet> selectRows(int size) {
+		BitSet[] indexed = new BitSet[predicates.length];
+		for (int p = 0; p < predicates.length; p++) {
+			RowFilter.Predicate predicate = predicates[p];
+			if (predicate.index != null) indexed[p] = predicate.index.select(predicate.predicate::matches);
+		}
+		List<BitSet> selections = Lists.newArrayList();
+		boolean[] rowWise = new boolean[include.length];
+		BitSet candidates = new BitSet(size);
+		for (int c = 0; c < include.length; c++) {
+			BitSet rows = new BitSet(size);
+			rows.set(0, size);
+			for (int p : include[c]) {
+				if (indexed[p] != null) rows.and(indexed[p]);
+				else rowWise[c] = true;
+			}
+			for (int p : exclude[c]) {
+				if (indexed[p] != null) rows.andNot(indexed[p]);
+				else rowWise[c] = true;
+			}
+			if (rowWise[c]) candidates.or(rows);
+			selections.add(rows);
+		}
+		int[] evaluated = new int[predicates.length];
+		boolean[] results = new boolean[predicates.length];
+		Arrays.fill(evaluated, -1);
+		for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+			for (int c = 0; c < include.length; c++) {
+				BitSet rows = selections.get(c);
+				if (rowWise[c] && rows.get(row) && !accept(c, row, indexed, evaluated, results)) rows.clear(row);
+			}
+		}
+		return selections;
+	}
+
+	private boolean accept(int c, int row, BitSet[] indexed, int[] evaluated, boolean[] results) {
+		for (int p : include[c]) {
+			if (indexed[p] == null && !matches(p, row, evaluated, results)) return false;
+		}
+		for (int p : exclude[c]) {
+			if (indexed[p] == null && matches(p, row, evaluated, results)) return false;
+		}
+		return true;
+	}
+
+	private boolean matches(int p, int row, int[] evaluated, boolean[] results) {
+		if (evaluated[p] != row) {
+			results[p] = predicates[p].matches(row);
+			evaluated[p] = row;
+		}
+		return results[p];
+	}
+
+}
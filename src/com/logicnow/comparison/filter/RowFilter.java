@@ -0,0 +1,182 @@
+package com.logicnow.comparison.filter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import com.logicnow.comparison.ComparatorConfig;
+import com.logicnow.comparison.ExecutionPlan;
+import com.logicnow.comparison.data.BitmapIndex;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.Dataset;
+
+/**
+ * The include and exclude filters of a config compiled against a dataset. Filter
+ * columns are resolved once, and predicates on dictionary encoded columns are
+ * evaluated once per distinct value, so accepting a row is a few array reads.
+ * Predicates on indexed columns select rows with bitmap operations.
+ */
+public class RowFilter {
+
+	final Predicate[] include;
+	final Predicate[] exclude;
+
+	private final boolean rowWise;
+
+	private RowFilter(Predicate[] include, Predicate[] exclude) {
+		this.include = include;
+		this.exclude = exclude;
+		boolean rowWise = false;
+		for (Predicate predicate : include) rowWise |= predicate.index == null;
+		for (Predicate predicate : exclude) rowWise |= predicate.index == null;
+		this.rowWise = rowWise;
+	}
+
+	/**
+	 * Compiles the config's filters, fails if a filter column is not in the dataset.
+	 */
+	public static RowFilter compile(ComparatorConfig config, Dataset data) {
+		return new RowFilter(compile(config, data, config.getIncludeFilters()), compile(config, data, config.getExcludeFilters()));
+	}
+
+	/**
+	 * Binds the plan's filters to the dataset projected by the plan.
+	 */
+	public static RowFilter compile(ExecutionPlan plan, Dataset data) {
+		Predicate[] include = new Predicate[plan.getIncludeCount()];
+		for (int i = 0; i < include.length; i++) {
+			include[i] = new Predicate(plan.getIncludeFilter(i), data.getColumn(plan.getIncludeColumn(i)));
+		}
+		Predicate[] exclude = new Predicate[plan.getExcludeCount()];
+		for (int i = 0; i < exclude.length; i++) {
+			exclude[i] = new Predicate(plan.getExcludeFilter(i), data.getColumn(plan.getExcludeColumn(i)));
+		}
+		return new RowFilter(include, exclude);
+	}
+
+	/**
+	 * Compiles filters that must all match (include) or none match (exclude).
+	 */
+	public static RowFilter compile(ComparatorConfig config, Dataset data, List<String[]> includeFilters, List<String[]> excludeFilters) {
+		return new RowFilter(compile(config, data, includeFilters), compile(config, data, excludeFilters));
+	}
+
+	static Predicate[] compile(ComparatorConfig config, Dataset data, List<String[]> filters) {
+		Predicate[] predicates = new Predicate[filters.size()];
+		for (int i = 0; i < predicates.length; i++) {
+			FilterPredicate predicate = FilterPredicate.compile(config, filters.get(i));
+			Column column = data.getColumn(predicate.getColumn());
+			if (column == null) {
+				throw new RuntimeException("Filter column " + predicate.getColumn() + " is not in the filtered columns");
+			}
+			predicates[i] = new Predicate(predicate, column);
+		}
+		return predicates;
+	}
+
+	public boolean allIncludesMatch(int row) {
+		for (Predicate predicate : include) {
+			if (!predicate.matches(row)) return false;
+		}
+		return true;
+	}
+
+	public boolean anyExcludeMatches(int row) {
+		for (Predicate predicate : exclude) {
+			if (predicate.matches(row)) return true;
+		}
+		return false;
+	}
+
+	/** True if every include filter and no exclude filter matches the row */
+	public boolean accept(int row) {
+		return allIncludesMatch(row) && !anyExcludeMatches(row);
+	}
+
+	/** Rows of the dataset the filters accept, in order */
+	public int[] select(int size) {
+		return selectRows(size).stream().toArray();
+	}
+
+	/**
+	 * Bitmap of the rows of the dataset the filters accept. Predicates on indexed
+	 * columns are answered from the index: the selection is the AND of the include
+	 * bitmaps, less the OR of the exclude bitmaps. The remaining predicates are
+	 * only evaluated for rows still selected.
+	 */
+	public BitSet selectRows(int size) {
+		BitSet rows = new BitSet(size);
+		rows.set(0, size);
+		for (Predicate predicate : include) {
+			if (predicate.index != null) rows.and(predicate.index.select(predicate.predicate::matches));
+		}
+		for (Predicate predicate : exclude) {
+			if (predicate.index != null) rows.andNot(predicate.index.select(predicate.predicate::matches));
+		}
+		if (rowWise) {
+			for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+				if (!acceptRowWise(row)) rows.clear(row);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Bitmap of the rows each filter rejects, the include filters first. Predicates
+	 * on indexed columns are answered from the index, the others are evaluated in
+	 * one pass over the rows.
+	 */
+	public BitSet[] rejectedRows(int size) {
+		Predicate[] predicates = ArrayUtils.addAll(include, exclude);
+		BitSet[] rejected = new BitSet[predicates.length];
+		for (int p = 0; p < predicates.length; p++) {
+			Predicate predicate = predicates[p];
+			if (predicate.index != null) {
+				rejected[p] = predicate.index.select(predicate.predicate::matches);
+				// include filters reject the rows they do not match
+				if (p < include.length) rejected[p].flip(0, size);
+			} else {
+				rejected[p] = new BitSet(size);
+			}
+		}
+		if (rowWise) {
+			for (int row = 0; row < size; row++) {
+				for (int p = 0; p < predicates.length; p++) {
+					if (predicates[p].index == null && predicates[p].matches(row) == (p >= include.length)) rejected[p].set(row);
+				}
+			}
+		}
+		return rejected;
+	}
+
+	private boolean acceptRowWise(int row) {
+		for (Predicate predicate : include) {
+			if (predicate.index == null && !predicate.matches(row)) return false;
+		}
+		for (Predicate predicate : exclude) {
+			if (predicate.index == null && predicate.matches(row)) return false;
+		}
+		return true;
+	}
+
+	/** A predicate bound to its column and the column's index if it was built */
+	static class Predicate {
+		final FilterPredicate predicate;
+		final Column column;
+		final boolean[] codes;
+		final BitmapIndex index;
+
+		Predicate(FilterPredicate predicate, Column column) {
+			this.predicate = predicate;
+			this.column = column;
+			this.codes = column.getDictionary() != null ? predicate.matchesCodes(column.getDictionary()) : null;
+			this.index = column.isIndexed() ? column.getIndex() : null;
+		}
+
+		boolean matches(int row) {
+			return codes != null ? codes[column.getCode(row)] : predicate.matches(column, row);
+		}
+	}
+
+}
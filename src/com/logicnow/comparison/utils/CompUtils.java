@@ -8,10 +8,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.text.MessageFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
@@ -19,19 +20,31 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Function;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
 import com.logicnow.comparison.ComparatorConfig;
+import com.logicnow.comparison.ExecutionPlan;
+import com.logicnow.comparison.NearMatcher;
 import com.logicnow.comparison.ReportComparator.CombinedRow;
 import com.logicnow.comparison.ResultPayload;
+import com.logicnow.comparison.TenantIdCodec;
+import com.logicnow.comparison.TenantSet;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.ColumnRef;
+import com.logicnow.comparison.data.ColumnType;
+import com.logicnow.comparison.data.Dataset;
+import com.logicnow.comparison.data.Dates;
+import com.logicnow.comparison.filter.FilterImpact;
+import com.logicnow.comparison.filter.MultiPatternMatcher;
+import com.logicnow.comparison.filter.MultiRowFilter;
+import com.logicnow.comparison.filter.RowFilter;
+import com.logicnow.comparison.data.Dictionary;
 import com.opencsv.CSVWriter;
 
 public class CompUtils {
@@ -60,101 +73,64 @@ public class CompUtils {
 		c.setEndDate(endDate);
 	}
 
-	public static Pair<String[], List<CSVRecord>> filterColumns(ComparatorConfig config, String[] header, List<CSVRecord> recs) {
+	public static Dataset filterColumns(ComparatorConfig config, Dataset data, String... keptColumns) {
 		// No configuration supplied so we are not filtering
 		if (config == null) {
-			return Pair.of(header, recs);
-		}
-		// Establish indexes of required columns
-		String[] columnsToInclude = config.getColumns();
-		List<Integer> indexes = Lists.newArrayList();
-		if (columnsToInclude != null && columnsToInclude.length < header.length) {
-			for (String h : columnsToInclude) {
-				int index = ArrayUtils.indexOf(header, h);
-				if (index != -1) {
-					indexes.add(index);
-				}
-			}
+			return data;
 		}
-		// filter header row
-		List<String> filteredHeader = Lists.newArrayList();
-		for (int i : indexes) {
-			filteredHeader.add(header[i]);
-		}
-		// 
-		String[] filteredHeaders = (String[])filteredHeader.toArray(new String[filteredHeader.size()]);
-		// filter records by columns
-		List<CSVRecord> records  = filterRecordsByIndexes(recs, indexes);
-		// filter records by inclusion
-		records = filterRecords(config, filteredHeaders, records, config.getIncludeFilters(), true);		
-		// filter records by exclusion
-		records = filterRecords(config, filteredHeaders, records, config.getExcludeFilters(), false);
+		// filter columns
+		ExecutionPlan plan = ExecutionPlan.compile(config, data.getHeaders(), keptColumns);
+		Dataset records = data.project(plan.getProjection());
+		// filter rows by inclusion and exclusion
+		BitSet rows = RowFilter.compile(plan, records).selectRows(records.size());
 		// return updated records
-		return Pair.of(filteredHeaders, records);
-	}
-
-	public static List<CSVRecord> filterRecords(ComparatorConfig config, String[] headers, List<CSVRecord> records, List<String[]> filters, boolean include) {
-		if (filters == null || filters.size() == 0) return records;
-		
-		List<CSVRecord> filtered = Lists.newArrayList();
-		for (CSVRecord r : records) {
-			if (include) {
-				boolean matched = allFiltersMatch(config, headers, filters, r);
-				if (matched) filtered.add(r);
-			} else {
-				boolean matched = anyFiltersMatch(config, headers, filters, r);
-				if (!matched) filtered.add(r);
-			}
+		return records.select(rows);
+	}
+
+	/**
+	 * Filters the data as {@link #filterColumns(ComparatorConfig, Dataset, String...)} and
+	 * attributes the removed rows and tenants to the filters that removed them. Every
+	 * filter is evaluated for every row in a single pass, rather than rerunning with
+	 * each filter left out.
+	 */
+	public static Pair<Dataset, List<FilterImpact>> filterColumnsWithImpact(ComparatorConfig config, Dataset data, String tenantColumn, String... keptColumns) {
+		ExecutionPlan plan = ExecutionPlan.compile(config, data.getHeaders(), keptColumns);
+		Dataset records = data.project(plan.getProjection());
+		BitSet[] rejected = RowFilter.compile(plan, records).rejectedRows(records.size());
+		BitSet rows = new BitSet(records.size());
+		rows.set(0, records.size());
+		for (BitSet filterRows : rejected) {
+			rows.andNot(filterRows);
+		}
+		List<FilterImpact> impacts = FilterImpact.attribute(config.getFilterDescriptions(), rejected, records.getColumn(tenantColumn));
+		return Pair.of(records.select(rows), impacts);
+	}
+
+	/**
+	 * Filters the same data for each config as {@link #filterColumns(ComparatorConfig, Dataset, String...)},
+	 * the distinct filters of all the configs are evaluated in a single pass.
+	 */
+	public static List<Dataset> filterColumns(List<ComparatorConfig> configs, List<Dataset> data, String... keptColumns) {
+		List<ExecutionPlan> plans = Lists.newArrayList();
+		List<Dataset> projected = Lists.newArrayList();
+		for (int i = 0; i < configs.size(); i++) {
+			plans.add(ExecutionPlan.compile(configs.get(i), data.get(i).getHeaders(), keptColumns));
+			projected.add(data.get(i).project(plans.get(i).getProjection()));
+		}
+		List<BitSet> rows = MultiRowFilter.compile(plans, projected).selectRows(data.isEmpty() ? 0 : data.get(0).size());
+		List<Dataset> filtered = Lists.newArrayList();
+		for (int i = 0; i < configs.size(); i++) {
+			filtered.add(projected.get(i).select(rows.get(i)));
 		}
 		return filtered;
 	}
 
 	public static boolean anyFiltersMatch(ComparatorConfig config, String[] headers, List<String[]> filters, CSVRecord r) {
-		Map<String, String> map = r.toMap(headers, null);
-		for (String[] f : filters) {
-			String column = f[0];
-			String operand = f[1];
-			String expected = f[2];
-			String actual = map.get(column);
-			if ("=".equals(operand)) {
-				if (actual.equals(expected)) {
-					return true;
-				}
-			} else if ("startsWith".equals(operand)) {
-				if (actual.startsWith(expected)) {
-					return true;
-				}
-			} else if ("endsWith".equals(operand)) {
-				if (actual.endsWith(expected)) {
-					return true;
-				}
-			} else if ("<".equals(operand) || ">".equals(operand) || "<=".equals(operand) || ">=".equals(operand)) {
-				// Assume this is only used with dates
-				Date d1 = CompUtils.parseDate(actual);
-				Date d2 = expected.startsWith("$") ? getVarDate(config, expected) : CompUtils.parseDate(expected);
-				int compare = d1.compareTo(d2);
-				switch (operand) {
-				case "<": 
-					if (compare >= 0) return false;
-					break;
-				case ">": 
-					if (compare <= 0) return false;
-					break;
-				case "<=": 
-					if (compare > 0) return false;
-					break;
-				case ">=": 
-					if (compare >= 0) return true;
-					break;
-				}
-				if (d1.compareTo(d2) < 0) {
-					return true;
-				}
-			} else {
-				throw new RuntimeException("Unsupported filter operand " + operand);
-			}
-		}
-		return false;		
+		return anyFiltersMatch(config, Dataset.of(headers, Collections.singletonList(r.items), null), filters, 0);
+	}
+
+	public static boolean anyFiltersMatch(ComparatorConfig config, Dataset records, List<String[]> filters, int row) {
+		return !RowFilter.compile(config, records, Collections.<String[]>emptyList(), filters).accept(row);
 	}
 
 	public static Date getVarDate(ComparatorConfig config, String expected) {
@@ -164,65 +140,42 @@ public class CompUtils {
 	}
 
 	public static boolean allFiltersMatch(ComparatorConfig config, String[] headers, List<String[]> filters, CSVRecord r) {
-		Map<String, String> map = r.toMap(headers, null);
-		for (String[] f : filters) {
-			String column = f[0];
-			String operand = f[1];
-			String expected = f[2];
-			String actual = map.get(column);
-			if ("=".equals(operand)) {
-				if (!actual.equals(expected)) {
-					return false;
-				}
-			} else if ("startsWith".equals(operand)) {
-				if (!actual.startsWith(expected)) {
-					return false;
-				}
-			} else if ("endsWith".equals(operand)) {
-				if (!actual.endsWith(expected)) {
-					return false;
-				}
-			} else if ("<".equals(operand) || ">".equals(operand) || "<=".equals(operand) || ">=".equals(operand)) {
-				// Assume this is only used with dates
-				Date d1 = CompUtils.parseDate(actual);
-				Date d2 = expected.startsWith("$") ? getVarDate(config, expected) : CompUtils.parseDate(expected);
-				int compare = d1.compareTo(d2);
-				switch (operand) {
-				case "<": 
-					if (compare >= 0) return false;
-					break;
-				case ">": 
-					if (compare <= 0) return false;
-					break;
-				case "<=": 
-					if (compare > 0) return false;
-					break;
-				case ">=": 
-					if (compare < 0) return false;
-					break;
-				}
-			} else {
-				throw new RuntimeException("Unsupported filter operand " + operand);
-			}
-		}
-		return true;
+		return allFiltersMatch(config, Dataset.of(headers, Collections.singletonList(r.items), null), filters, 0);
+	}
+
+	public static boolean allFiltersMatch(ComparatorConfig config, Dataset records, List<String[]> filters, int row) {
+		return RowFilter.compile(config, records, filters, Collections.<String[]>emptyList()).accept(row);
 	}
 
-	public static List<CSVRecord> filterRecordsByIndexes(List<CSVRecord> recs, List<Integer> indexes) {
-		List<CSVRecord> filtered = Lists.newArrayList();
-		for (CSVRecord r : recs) {
-			filtered.add(filterRecord(r, indexes));
+	/**
+	 * Storage types of the config's columns, date filter columns are stored as dates.
+	 */
+	public static Map<String, ColumnType> getColumnTypes(ComparatorConfig config) {
+		Map<String, ColumnType> types = Maps.newHashMap();
+		for (Map.Entry<String, String> coltype : config.getColumnTypes().entrySet()) {
+			ColumnType type = ColumnType.forColType(coltype.getValue());
+			if (type != ColumnType.STRING) types.put(coltype.getKey(), type);
 		}
-		return filtered;
+		addDateFilterColumns(types, config.getIncludeFilters());
+		addDateFilterColumns(types, config.getExcludeFilters());
+		return types;
 	}
 
-	public static CSVRecord filterRecord(CSVRecord r, List<Integer> indexes) {
-		List<String> itemList = Lists.newArrayList(r.items);
-		List<String> filteredItems = Lists.newArrayList();
-		for (int i : indexes) {
-			filteredItems.add(itemList.get(i));
+	/**
+	 * Columns referenced by the config's include and exclude filters.
+	 */
+	public static Set<String> getFilterColumns(ComparatorConfig config) {
+		Set<String> columns = Sets.newLinkedHashSet();
+		for (String[] f : config.getIncludeFilters()) columns.add(f[0]);
+		for (String[] f : config.getExcludeFilters()) columns.add(f[0]);
+		return columns;
+	}
+
+	private static void addDateFilterColumns(Map<String, ColumnType> types, List<String[]> filters) {
+		if (filters == null) return;
+		for (String[] f : filters) {
+			if (f[1].startsWith("<") || f[1].startsWith(">")) types.put(f[0], ColumnType.DATE);
 		}
-		return new CSVRecord(filteredItems.toArray(new String[filteredItems.size()]));
 	}
 
 	public static String getMonthStartDate() {
@@ -235,8 +188,7 @@ public class CompUtils {
 	}
 
 	public static String getSalesforceDate(String dateStr) {
-		Date d = parseDate(dateStr);
-		return DATE_FORMAT_3.format(d);
+		return Dates.Format.US_DATE.format(parseDate(dateStr).getTime());
 	}
 
 	public static String getYesterdaysDate() {
@@ -260,35 +212,22 @@ public class CompUtils {
 	public static String readAsText(Reader r) throws IOException { return org.apache.commons.io.IOUtils.toString(r); }
 
 	public static String generateAmarilloId(String tenant, String product) {
-		String id = tenant;
-		if ("RM".equals(product) || "RM(IT)".equals(product)) {
-			id = tenant.replace("_", ":");
-			int index = id.indexOf(":");
-			if (index != -1) {
-				String prefix = id.substring(0, index);
-				id = id.replace(prefix, "rm:" + prefix);				
-			}
-		} else if ("BU".equals(product)) {
-			id = "backup:" + tenant;
-		} else if ("MM".equals(product) || "MM(IT)".equals(product) || "RI".equals(product)) {
-			id = tenant;
-		}
-		return id;
+		return TenantIdCodec.of(product).toLeadId(tenant);
 	}
 
-	public static void writeCSVFile(File tmpFile, Pair<String[], List<CSVRecord>> records) throws IOException {
+	public static void writeCSVFile(File tmpFile, Dataset records) throws IOException {
 		tmpFile.getParentFile().mkdirs();
 		try (CSVWriter writer = new CSVWriter(new FileWriter(tmpFile))) {
-			writer.writeNext(records.getLeft());
-			for (CSVRecord r : records.getRight()) {
-				writer.writeNext(r.items);
+			writer.writeNext(records.getHeaders());
+			for (int row = 0; row < records.size(); row++) {
+				writer.writeNext(records.getRow(row));
 			}
-			System.out.println(MessageFormat.format("{0} filtered rows written to [{1}]", new Object[] { records.getRight().size(), tmpFile }));
+			System.out.println(MessageFormat.format("{0} filtered rows written to [{1}]", new Object[] { records.size(), tmpFile }));
 		}
 	}
 
 	public static String generateAmarilloString(String product, Set<String> set) {
-		TreeSet<String> sorted = getSortedSet(set);
+		Set<String> sorted = getSortedSet(set);
 		StringBuilder buffy = new StringBuilder();
 		if (sorted != null && sorted.size() > 0) {
 			buffy.append("(");
@@ -304,15 +243,15 @@ public class CompUtils {
 		return buffy.toString();
 	}
 
-	public static String getAmarilloString(Set<String> set, Map<String, List<CSVRecord>> map, String[] headers, String idColumn) {
-		TreeSet<String> sorted = getSortedSet(set);
+	public static String getAmarilloString(Set<String> set, Map<String, List<Integer>> map, Dataset records, String idColumn) {
+		Set<String> sorted = getSortedSet(set);
 		StringBuilder buffy = new StringBuilder();
-		int index = ArrayUtils.indexOf(headers, idColumn);
+		int index = records.indexOf(idColumn);
 		if (sorted != null && sorted.size() > 0) {
 			buffy.append("(");
 			for (String item : sorted) {
 				if (buffy.length() > 1) buffy.append(", ");
-				String id = map.get(item).get(0).items[index];
+				String id = records.getString(map.get(item).get(0), index);
 				buffy.append("'").append(id).append("'");
 			}
 			buffy.append(")");
@@ -323,7 +262,7 @@ public class CompUtils {
 	}
 
 	public static String getDBString(Set<String> set) {
-		TreeSet<String> sorted = getSortedSet(set);
+		Set<String> sorted = getSortedSet(set);
 		StringBuilder buffy = new StringBuilder();
 		if (sorted != null && sorted.size() > 0) {
 			buffy.append("(");
@@ -379,30 +318,37 @@ public class CompUtils {
 		return buffy.toString();
 	}
 
-	public static TreeSet<String> getSortedSet(Set<String> set) {
-		if (set == null) return null;
+	/**
+	 * Tenants of the set in none of the others, computed on the bitmaps of tenant sets.
+	 */
+	@SafeVarargs
+	public static Set<String> difference(Set<String> set, Set<String> ... others) {
+		Set<String> result = set;
+		for (Set<String> other : others) {
+			if (result instanceof TenantSet && other instanceof TenantSet) {
+				result = ((TenantSet) result).andNot((TenantSet) other);
+			} else {
+				result = Sets.newHashSet(Sets.difference(result, other));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The set in tenant order, tenant sets already iterate in order and are not copied.
+	 */
+	public static Set<String> getSortedSet(Set<String> set) {
+		if (set == null || set instanceof TenantSet) return set;
 		TreeSet<String> sorted = new TreeSet<>();
 		sorted.addAll(set);
 		return sorted; 
 	}
 
 	public static class CSVRecord {
-		public String[] items;
+		public final String[] items;
 		public CSVRecord(String[] items) {
 			this.items = items;
 		}
-		public Map<String, String> toMap(String[] headers) {
-			return toMap(headers, null);
-		}
-		public Map<String, String> toMap(String[] headers, Set<String> ignored) {
-			Map<String, String> map = Maps.newLinkedHashMap();
-			for (int i = 0; i < headers.length; i++) {
-				if (ignored == null || !ignored.contains(headers[i])) {
-					map.put(headers[i], items[i]);
-				}
-			}
-			return map;
-		}
 	}
 
 	public static String getStringValue(String str) {
@@ -418,44 +364,8 @@ public class CompUtils {
 	}
 
 	public static Date parseDate(String d) {
-		Date parsed = null;
-		for (SimpleDateFormat format : DATE_FORMATS) {
-			try {
-				return format.parse(d);
-			} catch (ParseException e) {
-				
-			}
-		}
-		return parsed;
-	}
-
-	public static File fixCSVAnomalies(File f, String... replaceStrings) throws IOException {
-		List<String> lines = FileUtils.readLines(f, ENCODING_UTF_8);
-		List<String> baseStrs = Lists.newArrayList(replaceStrings);
-		for (int i = 0; i < lines.size(); i++) {
-			String text = lines.get(i);
-			boolean lineModified = false;
-			List<String> strs = Lists.newArrayList(baseStrs);
-			while (strs.size() > 0) {
-				String string1 = strs.remove(0);
-				String string2 = strs.remove(0);
-				if (text.indexOf(string1) != -1) {
-					text = text.replace(string1, string2);
-					lineModified = true;
-				}
-			}
-			if (lineModified) {
-				lines.set(i, text);
-			}
-		}
-		String filename = f.getName();
-		int dotIndex = filename.indexOf(".");
-		String updatedFileName = filename.substring(0, dotIndex) + "_x" + filename.substring(dotIndex);
-		
-		File myTempDir = Files.createTempDir();
-		File updatedFile = new File(myTempDir, updatedFileName);
-		FileUtils.writeLines(updatedFile, ENCODING_UTF_8, lines);
-		return updatedFile;
+		long millis = Dates.parseMillis(d);
+		return millis != Column.NO_DATE ? new Date(millis) : null;
 	}
 
 	public static String getListValueOrMultiple(List<String> items) {
@@ -468,6 +378,9 @@ public class CompUtils {
 		return null;
 	}
 
+	public static final Function<String, String> PRODUCT_MAPPING = CompUtils::mappedProduct;
+	public static final Function<String, String> REGION_MAPPING = CompUtils::mappedRegion;
+
 	public static String mappedProduct(String p) {
 		if ("1 - RM".equals(p)) return "RM";
 		if ("3 - Backup".equals(p)) return "BU";
@@ -494,17 +407,40 @@ public class CompUtils {
 		return region;
 	}
 
+	// columns the discrepancy reasons read, resolved once per dataset
+	private static final ColumnRef AMARILLO_EMAIL = ColumnRef.of("Email");
+	private static final ColumnRef AMARILLO_FIXED_PRODUCT = ColumnRef.of("Fixed Product");
+	private static final ColumnRef AMARILLO_IS_REAL_NOTE = ColumnRef.of("Is Real Note");
+	private static final ColumnRef AMARILLO_LN_ATTRIBUTION_GROUP = ColumnRef.of("LN Attribution Group");
+	private static final ColumnRef AMARILLO_MARKETING_TERRITORY = ColumnRef.of("Marketing Territory");
+	private static final ColumnRef AMARILLO_OPPORTUNITY_STAGE_DETAIL = ColumnRef.of("Opportunity Stage Detail");
+	private static final ColumnRef AMARILLO_TRIAL_DATE = ColumnRef.of("Trial Date");
+	private static final ColumnRef SFDC_CORE_PRODUCT = ColumnRef.of("Core Product");
+	private static final ColumnRef SFDC_CREATED_DATE = ColumnRef.of("Created Date");
+	private static final ColumnRef SFDC_GROUP = ColumnRef.of("Group");
+	private static final ColumnRef SFDC_IS_VALID = ColumnRef.of("Is Valid");
+	private static final ColumnRef SFDC_OPPORTUNITY_NAME = ColumnRef.of("Opportunity Name");
+	private static final ColumnRef SFDC_TRIAL_START = ColumnRef.of("Trial Start");
+	private static final ColumnRef FEED_OPPORTUNITY_TYPE = ColumnRef.of("OpportunityType");
+	private static final ColumnRef FEED_PRODUCT = ColumnRef.of("Product");
+	private static final ColumnRef FEED_SOURCE = ColumnRef.of("Source");
+	private static final ColumnRef FEED_SUB_REGION = ColumnRef.of("Sub-Region");
+	private static final ColumnRef FEED_TENANT_ID = ColumnRef.of("TenantID");
+	private static final ColumnRef FEED_TRIAL_START = ColumnRef.of("Trial_Start");
+
 	public static Triple<String, String, String> establishReason(ResultPayload payload, CombinedRow item) {
 		String tenantId = item.tenantId;
-		List<CSVRecord> aRecords = payload.getAmarilloAllMap().get(tenantId);
-		List<CSVRecord> sRecords = payload.getSfdcAllMap().get(tenantId);
-		List<CSVRecord> fRecords = payload.getFeedMap().get(tenantId);
+		List<Integer> aRecords = payload.getAmarilloAllMap().get(tenantId);
+		List<Integer> sRecords = payload.getSfdcAllMap().get(tenantId);
+		List<Integer> fRecords = payload.getFeedMap().get(tenantId);
 		// Ensure we have records to make a comparison
 		if (CompUtils.isEmpty(aRecords) && (CompUtils.isEmpty(sRecords) && CompUtils.isEmpty(fRecords)))
 			return null;
 		// Run through potential reasons in order
 		Triple<String, String, String> reason = null;
-		if ((reason = checkTerritoryChange(payload, item, aRecords, sRecords, fRecords)) != null) {
+		if ((reason = checkNearMatch(payload, item, true)) != null) {
+			return reason;
+		} else if ((reason = checkTerritoryChange(payload, item, aRecords, sRecords, fRecords)) != null) {
 			return reason;
 		} else if ((reason = checkProductChange(payload, item, aRecords, sRecords, fRecords)) != null) {
 			return reason;
@@ -530,20 +466,36 @@ public class CompUtils {
 			return reason;
 		} else if ((reason = checkMissingFromSfdcFeed(payload, item, aRecords, sRecords, fRecords)) != null) {
 			return reason;
+		} else if ((reason = checkNearMatch(payload, item, false)) != null) {
+			return reason;
 		} 
 		return null;
 	}
 
-	private static Triple<String, String, String> checkMissingFromSfdcFeed(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> entries = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "TenantID");
+	/**
+	 * Keys equal once normalized are checked first, keys a few edits apart only
+	 * when no other reason is found.
+	 */
+	private static Triple<String, String, String> checkNearMatch(ResultPayload payload, CombinedRow item, boolean normalizedOnly) {
+		NearMatcher.Match match = payload.getNearMatches() != null ? payload.getNearMatches().get(item.tenantId) : null;
+		if (match != null && (match.getDistance() == 0) == normalizedOnly) {
+			String side = item.isInAmarilloOnly() ? "SFDC" : "Amarillo";
+			String detail = match.getDistance() == 0 ? "Same key once normalized" : "Edit distance " + match.getDistance();
+			return Triple.of("Key Mismatch", "Near match " + match.getMatch() + " in " + side, detail);
+		}
+		return null;
+	}
+
+	private static Triple<String, String, String> checkMissingFromSfdcFeed(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		List<String> entries = getAttributes(payload.getFeedRecords(), fRecords, FEED_TENANT_ID);
 		if (CompUtils.isEmpty(entries)) {
 			return Triple.of("Not in SFDC Feed", "Validity not read from SFDC", "");
 		}
 		return null;
 	}
 	
-	private static Triple<String, String, String> checkTrialStartMissingFromAmarillo(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> trialStart = getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Trial Date");
+	private static Triple<String, String, String> checkTrialStartMissingFromAmarillo(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		List<String> trialStart = getAttributes(payload.getAmarilloAllRecords(), aRecords, AMARILLO_TRIAL_DATE);
 		if (trialStart == null || trialStart.size() == 0) {
 			String value = CompUtils.getListValueOrMultiple(trialStart);
 			if (CompUtils.isBlank(value)) {
@@ -553,20 +505,20 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkTrialStartinSFDCButNotAmarillo(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		String amarilloTrialDate = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Trial Date"));
-		String sfdcTrialDate = CompUtils.getListValueOrMultiple(getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Trial Start"));
-		String sfdcOppCreateDate = CompUtils.getListValueOrMultiple(getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Created Date"));
+	private static Triple<String, String, String> checkTrialStartinSFDCButNotAmarillo(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		String amarilloTrialDate = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords(), aRecords, AMARILLO_TRIAL_DATE));
+		String sfdcTrialDate = CompUtils.getListValueOrMultiple(getAttributes(payload.getSfdcAllRecords(), sRecords, SFDC_TRIAL_START));
+		String sfdcOppCreateDate = CompUtils.getListValueOrMultiple(getAttributes(payload.getSfdcAllRecords(), sRecords, SFDC_CREATED_DATE));
 		if (CompUtils.isBlank(amarilloTrialDate) && !CompUtils.isBlank(sfdcTrialDate)) {
 			return Triple.of("Timing Issue", "Trial Start unset in Amarillo set in SFDC", "Opp Created " + sfdcOppCreateDate + ", SFDC Trial Start " + sfdcTrialDate);					
 		}
 		return null;
 	}
 
-	private static Triple<String, String, String> checkTrialStartMissingFromSFDC(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> present = getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Trial Start");
+	private static Triple<String, String, String> checkTrialStartMissingFromSFDC(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		List<String> present = getAttributes(payload.getSfdcAllRecords(), sRecords, SFDC_TRIAL_START);
 		if (present == null || present.size() == 0) {
-			List<String> attributes = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "Trial_Start");
+			List<String> attributes = getAttributes(payload.getFeedRecords(), fRecords, FEED_TRIAL_START);
 			String value = CompUtils.getListValueOrMultiple(attributes);
 			if (CompUtils.isBlank(value)) {
 				return Triple.of("Timing Issue", "Trial Start unset in SFDC", "");					
@@ -575,20 +527,21 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkOpportunityType(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> attributes = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "OpportunityType");
+	private static final MultiPatternMatcher EXCLUDED_OPPORTUNITY_TYPES = new MultiPatternMatcher(Arrays.asList("renewal", "migration", "customer"), true);
+
+	private static Triple<String, String, String> checkOpportunityType(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		List<String> attributes = getAttributes(payload.getFeedRecords(), fRecords, FEED_OPPORTUNITY_TYPE);
 		String value = CompUtils.getListValueOrMultiple(attributes);
 		if (value != null) {
-			String val = value.toLowerCase();
-			if (val.contains("renewal") || val.contains("migration") || val.contains("customer")) {
+			if (EXCLUDED_OPPORTUNITY_TYPES.containsAny(value)) {
 				return Triple.of("Excluded from SFDC", "Type " + value, "");					
 			} 
 		}
 		return null;
 	}
 
-	private static Triple<String, String, String> checkCustomerTrial(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> attributes = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "Source");
+	private static Triple<String, String, String> checkCustomerTrial(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		List<String> attributes = getAttributes(payload.getFeedRecords(), fRecords, FEED_SOURCE);
 		String value = CompUtils.getListValueOrMultiple(attributes);
 		if ("Customer Trial".equals(value)) {
 			return Triple.of("Excluded from SFDC", "Source is Customer Trial", "");					
@@ -596,23 +549,21 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkTimingIssue(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		Date start = payload.getStartDate();
-		Date end = payload.getEndDate();
-		List<String> attributes = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "Trial_Start");
+	private static Triple<String, String, String> checkTimingIssue(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		List<String> attributes = getAttributes(payload.getFeedRecords(), fRecords, FEED_TRIAL_START);
 		String value = CompUtils.getListValueOrMultiple(attributes);
-		Date trialStart = (value != null && !CompUtils.MULTIPLE.equals(value)) ? parseDate(value) : null;
-		if (trialStart != null) {
-			if (trialStart.before(start) || trialStart.after(end)) {
+		long trialStart = (value != null && !CompUtils.MULTIPLE.equals(value)) ? Dates.parseMillis(value) : Column.NO_DATE;
+		if (trialStart != Column.NO_DATE) {
+			if (trialStart < payload.getStartDate().getTime() || trialStart > payload.getEndDate().getTime()) {
 				return Triple.of("Timing Issue", "Trial Start out of Range in SFDC", "");					
 			}
 		}
 		return null;
 	}
 
-	private static Triple<String, String, String> checkSFDCDupesVaryingValidity(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
+	private static Triple<String, String, String> checkSFDCDupesVaryingValidity(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
 		if (payload.getSfdcDupes().contains(item.tenantId)) {
-			List<String> attributes = getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Is Valid");
+			List<String> attributes = getAttributes(payload.getSfdcAllRecords(), sRecords, SFDC_IS_VALID);
 			String value = CompUtils.getListValueOrMultiple(attributes);
 			if (CompUtils.MULTIPLE.equals(value)) {
 				return Triple.of("Multiple entry in SFDC", "Different validity values", "");
@@ -621,18 +572,18 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkEmployeeTesting(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		String attributionValue = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "LN Attribution Group"));
-		String isRealNoteValue = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Is Real Note"));
+	private static Triple<String, String, String> checkEmployeeTesting(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		String attributionValue = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords(), aRecords, AMARILLO_LN_ATTRIBUTION_GROUP));
+		String isRealNoteValue = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords(), aRecords, AMARILLO_IS_REAL_NOTE));
 		StringBuilder buffy = new StringBuilder();
 		if ("Employee Testing".equals(attributionValue)) {
 			if (isRealNoteValue != null) buffy.append(isRealNoteValue);
 			if (isRealNoteValue != null) {
 				if (isRealNoteValue.contains("email address")) {
-					String attr = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Email"));
+					String attr = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords(), aRecords, AMARILLO_EMAIL));
 					if (attr != null) buffy.append(" ").append(attr);
 				} else if (isRealNoteValue.contains("opportunity_stage_detail")) {
-					String attr = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Opportunity Stage Detail"));
+					String attr = CompUtils.getListValueOrMultiple(getAttributes(payload.getAmarilloAllRecords(), aRecords, AMARILLO_OPPORTUNITY_STAGE_DETAIL));
 					if (attr != null) buffy.append(" ").append(attr);
 				}
 			}
@@ -641,17 +592,17 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkSolarwindsOpp(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		String oppNameValue = CompUtils.getListValueOrMultiple(getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Opportunity Name"));
+	private static Triple<String, String, String> checkSolarwindsOpp(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		String oppNameValue = CompUtils.getListValueOrMultiple(getAttributes(payload.getSfdcAllRecords(), sRecords, SFDC_OPPORTUNITY_NAME));
 		if (oppNameValue != null && oppNameValue.contains("SolarWinds Opp")) {
 			return Triple.of("SolarWinds Opp", oppNameValue, "");
 		}
 		return null;
 	}
 
-	private static Triple<String, String, String> checkReUsedTenant(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
+	private static Triple<String, String, String> checkReUsedTenant(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
 		if (item.isInAmarilloOnly()) {
-			List<String> tenants = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "TenantID");
+			List<String> tenants = getAttributes(payload.getFeedRecords(), fRecords, FEED_TENANT_ID);
 			if (CompUtils.isEmpty(tenants)) {
 				return Triple.of("Not in SFDC Feed", "Validity not read from SFDC", "");
 			}
@@ -659,18 +610,10 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkProductChange(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> aProducts = getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Fixed Product");
-		List<String> sProducts = getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Core Product");
-		List<String> fProducts = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "Product");
-		
-		String aProduct = !CompUtils.isEmpty(aProducts) ? CompUtils.getListValueOrMultiple(aProducts) : null;		
-		String sProduct = !CompUtils.isEmpty(sProducts) ? CompUtils.getListValueOrMultiple(sProducts) : null;
-		String fProduct = !CompUtils.isEmpty(fProducts) ? CompUtils.getListValueOrMultiple(fProducts) : null;
-		
-		aProduct = CompUtils.mappedProduct(aProduct);
-		sProduct = CompUtils.mappedProduct(sProduct);
-		fProduct = CompUtils.mappedProduct(fProduct);
+	private static Triple<String, String, String> checkProductChange(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		String aProduct = getMappedValueOrMultiple(payload.getAmarilloAllRecords(), aRecords, AMARILLO_FIXED_PRODUCT, PRODUCT_MAPPING);
+		String sProduct = getMappedValueOrMultiple(payload.getSfdcAllRecords(), sRecords, SFDC_CORE_PRODUCT, PRODUCT_MAPPING);
+		String fProduct = getMappedValueOrMultiple(payload.getFeedRecords(), fRecords, FEED_PRODUCT, PRODUCT_MAPPING);
 		
 		if (item.isInBoth() && !CompUtils.isBlank(aProduct) && !aProduct.equals(sProduct)) {
 			return Triple.of("Product Change", "1:" + aProduct + " in Amarillo, " + sProduct + " in SFDC", "");
@@ -684,18 +627,10 @@ public class CompUtils {
 		return null;
 	}
 
-	private static Triple<String, String, String> checkTerritoryChange(ResultPayload payload, CombinedRow item, List<CSVRecord> aRecords, List<CSVRecord> sRecords, List<CSVRecord> fRecords) {
-		List<String> aRegions = getAttributes(payload.getAmarilloAllRecords().getLeft(), aRecords, "Marketing Territory");
-		List<String> sRegions = getAttributes(payload.getSfdcAllRecords().getLeft(), sRecords, "Group");
-		List<String> fRegions = getAttributes(payload.getFeedRecords().getLeft(), fRecords, "Sub-Region");
-		
-		String aRegion = aRegions != null && aRegions.size() > 0 ? CompUtils.getListValueOrMultiple(aRegions) : null;		
-		String sRegion = sRegions != null && sRegions.size() > 0 ? CompUtils.getListValueOrMultiple(sRegions) : null;
-		String fRegion = fRegions != null && fRegions.size() > 0 ? CompUtils.getListValueOrMultiple(fRegions) : null;
-		
-		aRegion = CompUtils.mappedRegion(aRegion);
-		sRegion = CompUtils.mappedRegion(sRegion);
-		fRegion = CompUtils.mappedRegion(fRegion);
+	private static Triple<String, String, String> checkTerritoryChange(ResultPayload payload, CombinedRow item, List<Integer> aRecords, List<Integer> sRecords, List<Integer> fRecords) {
+		String aRegion = getMappedValueOrMultiple(payload.getAmarilloAllRecords(), aRecords, AMARILLO_MARKETING_TERRITORY, REGION_MAPPING);
+		String sRegion = getMappedValueOrMultiple(payload.getSfdcAllRecords(), sRecords, SFDC_GROUP, REGION_MAPPING);
+		String fRegion = getMappedValueOrMultiple(payload.getFeedRecords(), fRecords, FEED_SUB_REGION, REGION_MAPPING);
 		
 		if (item.isInBoth() && sRegion != null && !CompUtils.isBlank(aRegion) && !aRegion.equals(sRegion)) {
 			return Triple.of("Territory Change", "1:" + aRegion + " in Amarillo, " + sRegion + " in SFDC", "");
@@ -709,17 +644,33 @@ public class CompUtils {
 		return null;
 	}
 
-	private static List<String> getAttributes(String[] headers, List<CSVRecord> records, String attributeName) {
+	private static List<String> getAttributes(Dataset data, List<Integer> rows, ColumnRef attribute) {
 		List<String> values = Lists.newArrayList();
-		if (records != null) {
-			for (CSVRecord record : records) {
-				String value = record.toMap(headers).get(attributeName);
-				if (value != null) values.add(value);
+		Column column = attribute.in(data);
+		if (rows != null && column != null) {
+			for (int row : rows) {
+				values.add(column.getString(row));
 			}
 		}
 		return values;
 	}
 
+	/**
+	 * The mapped value of the rows' attribute, or the mapped {@link #MULTIPLE} if the
+	 * rows differ. Encoded columns compare codes and map each distinct value once.
+	 */
+	private static String getMappedValueOrMultiple(Dataset data, List<Integer> rows, ColumnRef attribute, Function<String, String> mapping) {
+		Column column = attribute.in(data);
+		if (CompUtils.isEmpty(rows) || column == null) return mapping.apply(null);
+		Dictionary dictionary = column.getDictionary();
+		if (dictionary == null) return mapping.apply(getListValueOrMultiple(getAttributes(data, rows, attribute)));
+		int code = column.getCode(rows.get(0));
+		for (int row : rows) {
+			if (column.getCode(row) != code) return mapping.apply(MULTIPLE);
+		}
+		return dictionary.getMapped(code, mapping);
+	}
+
 	public static String generateCommentedSQL(ResultPayload... payloads) {
 		StringBuilder buffy = new StringBuilder();
 		for (ResultPayload p : payloads) {
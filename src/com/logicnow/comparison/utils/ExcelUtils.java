@@ -7,9 +7,9 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
+import java.util.Set;
 
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
@@ -21,9 +21,13 @@ import org.apache.poi.ss.util.CellRangeAddress;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.logicnow.comparison.ComparatorConfig;
+import com.logicnow.comparison.ProductConflicts;
+import com.logicnow.comparison.ProductConflicts.Conflict;
 import com.logicnow.comparison.ReportComparator.CombinedRow;
 import com.logicnow.comparison.ResultPayload;
-import com.logicnow.comparison.utils.CompUtils.CSVRecord;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.Dataset;
+import com.logicnow.comparison.filter.FilterImpact;
 
 public class ExcelUtils {
 
@@ -32,6 +36,7 @@ public class ExcelUtils {
 	public static final int SHEET_COL_WIDTH_WIDE = 6000;
 	public static final int SHEET_COL_WIDTH_EXTRA_WIDE = 8000;
 	public static final int SHEET_COL_WIDTH_MEDIUM = 5000;
+	public static final int MAX_CELL_LENGTH = 32767;
 	
 	public static void writeExcelFile(File file, boolean includeFilteredSheets, ResultPayload... payloads) {
 		System.out.println("Writing Excel result file...");
@@ -52,6 +57,9 @@ public class ExcelUtils {
 			populateSheet(p, sheet);
 		}
 
+		// Add cross product sheet
+		populateConflictSheet(wb.createSheet("Product Conflicts"), payloads);
+
 		// Add Amarillo All sheet
 		addRecordsToSheet(wb, wb.createSheet("Amarillo All"), payloads[0].getAmarilloAllRecords());
 		// Add SFDC All sheet
@@ -132,19 +140,38 @@ public class ExcelUtils {
 		rownum = addBlankRow(sheet, rownum);
 		rownum = addDataRow(sheet, rownum, "Config Amarillo", new Object[] { payload.getAmarilloConfig().asString(", ") });
 		rownum = addDataRow(sheet, rownum, "Config SFDC", new Object[] { payload.getSfdcConfig().asString(", ") });
+		if (payload.getAmarilloFilterImpact() != null) {
+			rownum = addBlankRow(sheet, rownum);
+			rownum = addHeaderRow(sheet, rownum, product + " Filter Impact");
+			rownum = addDataRow(sheet, rownum, "Filter", new Object[] { "", "Rows Alone", "Rows Together", "Tenants Alone", "Tenants Together", "Removed Alone", "Removed Together" });
+			rownum = addFilterImpactRows(sheet, rownum, "Amarillo", payload.getAmarilloFilterImpact());
+			rownum = addFilterImpactRows(sheet, rownum, "SFDC", payload.getSfdcFilterImpact());
+		}
 		
 		setColumnWidth(sheet, 0, INFO_COL1_WIDTH);
 	}
 
+	private static int addFilterImpactRows(HSSFSheet sheet, int rownum, String source, List<FilterImpact> impacts) {
+		for (FilterImpact impact : impacts) {
+			rownum = addDataRow(sheet, rownum, source, new Object[] { impact.getFilter(), impact.getRowsAlone(), impact.getRowsTogether(), 
+					impact.getTenantsAlone().size(), impact.getTenantsTogether().size(), 
+					abbreviate(CompUtils.getDBString(impact.getTenantsAlone())), abbreviate(CompUtils.getDBString(impact.getTenantsTogether())) });
+		}
+		return rownum;
+	}
+
+	private static String abbreviate(String value) {
+		// a filter such as the product filter removes most tenants, longer text does not fit in a cell
+		return StringUtils.abbreviate(value, MAX_CELL_LENGTH);
+	}
+
 	public static List<CombinedRow> getCombinedRecords(ResultPayload payload) {
 		List<CombinedRow> records = Lists.newArrayList();
-		TreeSet<String> allSorted = CompUtils.getSortedSet(payload.getCombined());
+		// We don't need to see items that are both/neither valid
+		Set<String> allSorted = CompUtils.getSortedSet(CompUtils.difference(payload.getCombined(), payload.getBothValid(), payload.getNeitherValid()));
 		CombinedRow row = null;
 		String product = payload.getProduct();
 		for (String tenant : allSorted) {
-			// We don't need to see items that are both/neither valid
-			if (payload.getBothValid().contains(tenant)) continue;
-			if (payload.getNeitherValid().contains(tenant)) continue;
 			// Generate the remaining entries
 			row = new CombinedRow(tenant);
 			row.leadId = CompUtils.generateAmarilloId(tenant, product);
@@ -206,54 +233,82 @@ public class ExcelUtils {
 		setDataFilter(sheet, 0, records.size() - 1, 0, CompUtils.COMBINED_HEADERS.length - 1);
 	}
 
-	public static void addRecordsToSheet(HSSFWorkbook wb, HSSFSheet sheet, Pair<String[], List<CSVRecord>> records) {
+	/**
+	 * Lists the tenants classified under more than one product, with their class
+	 * in each product.
+	 */
+	public static void populateConflictSheet(HSSFSheet sheet, ResultPayload... payloads) {
+		List<Conflict> conflicts = ProductConflicts.find(payloads);
+		List<String> headers = Lists.newArrayList("Tenant ID", "Products", "Conflict");
+		for (ResultPayload p : payloads) {
+			headers.add(p.getProduct());
+		}
+		int rownum = addDataRow(sheet, 0, headers.get(0), headers.subList(1, headers.size()).toArray());
+		for (Conflict conflict : conflicts) {
+			List<String> products = Lists.newArrayList();
+			List<Object> data = Lists.newArrayList();
+			for (int p = 0; p < payloads.length; p++) {
+				if (conflict.getFlags(p) != 0) products.add(payloads[p].getProduct());
+			}
+			data.add(String.join(", ", products));
+			data.add(conflict.isValidityConflict() ? "Validity" : "Product");
+			for (int p = 0; p < payloads.length; p++) {
+				data.add(ProductConflicts.describe(conflict.getFlags(p)));
+			}
+			rownum = addDataRow(sheet, rownum, conflict.getTenant(), data.toArray());
+		}
+		setColumnWidth(sheet, 0, SHEET_COL_WIDTH_MEDIUM);
+		setColumnWidth(sheet, 1, SHEET_COL_WIDTH_WIDE);
+		for (int p = 0; p < payloads.length; p++) {
+			setColumnWidth(sheet, 3 + p, SHEET_COL_WIDTH_MEDIUM);
+		}
+		setDataFilter(sheet, 0, conflicts.size(), 0, headers.size() - 1);
+	}
+
+	public static void addRecordsToSheet(HSSFWorkbook wb, HSSFSheet sheet, Dataset records) {
 		addRecordsToSheet(wb, sheet, records, null);
 	}
 
-	public static void addRecordsToSheet(HSSFWorkbook wb, HSSFSheet sheet, Pair<String[], List<CSVRecord>> records, ComparatorConfig config) {
+	public static void addRecordsToSheet(HSSFWorkbook wb, HSSFSheet sheet, Dataset records, ComparatorConfig config) {
 		int rownum = 0;
 		Row row = sheet.createRow(rownum++);
 		int cellnum = 0;
 		// Headers
-		String[] headers = records.getLeft();
+		String[] headers = records.getHeaders();
 		for (String value : headers) {
 			Cell cell = row.createCell(cellnum++);
 			cell.setCellValue(value);
 		}
 		// Data
 		Map<String, String> coltypes = config != null ? config.getColumnTypes() : Maps.newHashMap();
-		for (CSVRecord r : records.getRight()) {
+		String[] types = new String[headers.length];
+		for (int c = 0; c < headers.length; c++) {
+			types[c] = coltypes.get(headers[c]);
+		}
+		for (int r = 0; r < records.size(); r++) {
 			row = sheet.createRow(rownum++);
-			cellnum = 0;
-			for (String item : r.items) {
-				String header = headers[cellnum];
-				String coltype = coltypes.get(header);
-				if ("integer".equals(coltype)) {
-					if ("".equals(item)) {
-						row.createCell(cellnum++).setCellValue(item);
-					} else if (item.indexOf(".") > -1) {
-						// parse as a double in case we have trailing decimals then convert
-						int intValue = (int)Double.parseDouble(item);						
-						row.createCell(cellnum++).setCellValue(intValue);					
-					} else {
-						// parse as an integer
-						row.createCell(cellnum++).setCellValue(Integer.valueOf(item));					
-					}
+			for (cellnum = 0; cellnum < headers.length; cellnum++) {
+				Column column = records.getColumn(cellnum);
+				String coltype = types[cellnum];
+				if ("integer".equals(coltype) && column.hasInt(r)) {
+					// integers and trailing decimals were parsed when the column was loaded
+					row.createCell(cellnum).setCellValue(column.getInt(r));
 				} else if ("strip".equals(coltype)) {
 					// strip leading/trailing formatting from amarillo raw output
+					String item = column.getString(r);
 					if (item.startsWith("=\"")) {
 						item = item.substring(2);
 					}
 					if (item.endsWith("\"")) {
 						item = item.substring(0, item.length() - 1);
 					}
-					row.createCell(cellnum++).setCellValue(item);
+					row.createCell(cellnum).setCellValue(item);
 				} else {
-					row.createCell(cellnum++).setCellValue(item);
+					row.createCell(cellnum).setCellValue(column.getString(r));
 				}
 			}			
 		}
-		setDataFilter(sheet, 0, records.getRight().size() - 1, 0, headers.length - 1);
+		setDataFilter(sheet, 0, records.size() - 1, 0, headers.length - 1);
 	}
 
 	public static void setDataFilter(HSSFSheet sheet, int firstRow, int lastRow, int firstCol, int lastCol) {
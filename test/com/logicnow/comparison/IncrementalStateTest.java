@@ -0,0 +1,194 @@
+package com.logicnow.comparison;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.logicnow.comparison.csv.CsvEngine;
+import com.logicnow.comparison.data.Dataset;
+
+public class IncrementalStateTest {
+
+	private static final String CONFIG = "test/data/config_RM.json";
+	private static final String START_DATE = "2016-05-10";
+	private static final String END_DATE = "2016-05-31";
+
+	private static final List<String> AMARILLO_COLUMNS = Lists.newArrayList("Lead Id", "Fixed Product", "Name", "Date", "Trial Date", "Valid Leads",
+			"LN Attribution Group", "GA Medium", "GA Source", "LN Medium", "LN Source", "RM Company Type", "RM Internal Distributor", "Duplicate",
+			"Marketing Territory", "SFDC Region", "SFDC Sub-Region", "SFDC Lead Territory", "Adv", "Loc", "GA Client ID", "LN Lead Source",
+			"GA Tracked", "Distributor Name", "Tenant ID", "Controlnow Migrated Tenant Id", "Opportunity Type", "Signup URL", "Opportunity Stage",
+			"ADV Campaign Type", "ADV Campaign Name", "ADV Description", "PPC Campaign Name", "PPC Account Name", "Trial Status", "Is Real",
+			"Is Real Note", "Opportunity Stage Detail");
+	private static final List<String> SFDC_COLUMNS = Lists.newArrayList("Is Valid", "Distributor Name", "Opportunity Name", "Tenant MAXRM",
+			"Core Product", "Group", "Trial Start", "Created Date", "Close Date");
+	private static final List<String> FEED_COLUMNS = Lists.newArrayList("TenantID", "Trial_Start", "Product");
+
+	@Test
+	public void testIncrementalRunsMatchFullRuns() throws Exception {
+		for (String engine : new String[] { CsvEngine.OPENCSV, CsvEngine.MAPPED, CsvEngine.PARALLEL }) {
+			System.setProperty(ReportComparator.ENGINE_AMARILLO_PROP, engine);
+			System.setProperty(ReportComparator.ENGINE_SFDC_PROP, engine);
+			System.setProperty(ReportComparator.ENGINE_FEED_PROP, engine);
+			try {
+				assertIncrementalRunsMatchFullRuns();
+			} finally {
+				System.clearProperty(ReportComparator.ENGINE_AMARILLO_PROP);
+				System.clearProperty(ReportComparator.ENGINE_SFDC_PROP);
+				System.clearProperty(ReportComparator.ENGINE_FEED_PROP);
+			}
+		}
+	}
+
+	private static void assertIncrementalRunsMatchFullRuns() throws Exception {
+		Random random = new Random(5);
+		File dir = Files.createTempDir();
+		try {
+			List<String[]> amarillo = Lists.newArrayList();
+			List<String[]> sfdc = Lists.newArrayList();
+			List<String[]> feed = Lists.newArrayList();
+			int tenants = 0;
+			for (int day = 0; day < 5; day++) {
+				// rows are removed, changed, repeated, added and moved between runs
+				for (int i = 0; i < 40; i++) {
+					int tenant = day == 0 || random.nextBoolean() ? tenants++ : random.nextInt(tenants);
+					amarillo.add(amarilloRow(random, tenant));
+					if (random.nextInt(10) < 8) sfdc.add(sfdcRow(random, tenant));
+					if (random.nextBoolean()) feed.add(new String[] { tenant(tenant), "2016-05-01", "LN - MAX RM" });
+				}
+				if (day > 0) {
+					change(random, amarillo, AMARILLO_COLUMNS.indexOf("Valid Leads"));
+					change(random, amarillo, AMARILLO_COLUMNS.indexOf("Marketing Territory"));
+					change(random, sfdc, SFDC_COLUMNS.indexOf("Is Valid"));
+					change(random, sfdc, SFDC_COLUMNS.indexOf("Tenant MAXRM"));
+				}
+				write(new File(dir, "amarillo.csv"), AMARILLO_COLUMNS, amarillo);
+				write(new File(dir, "sfdc.csv"), SFDC_COLUMNS, sfdc);
+				write(new File(dir, "feed.csv"), FEED_COLUMNS, feed);
+
+				Pair<ReportData, ResultPayload> full = run(dir, null);
+				IncrementalState state = new IncrementalState(new File(dir, "state"));
+				Pair<ReportData, ResultPayload> incremental = run(dir, state);
+				state.save();
+				if (day == 0) {
+					assertNull(incremental.getLeft().getAmarilloChange());
+				} else {
+					// merged from the previous run and classified from the previous flags
+					assertNotNull(incremental.getLeft().getAmarilloChange());
+					assertNull(incremental.getRight().getReconciliation());
+				}
+				assertSameRows(full.getLeft().getAmarilloRecords(), incremental.getLeft().getAmarilloRecords());
+				assertSameRows(full.getLeft().getSfdcRecords(), incremental.getLeft().getSfdcRecords());
+				assertSamePayload(full.getRight(), incremental.getRight());
+			}
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	private static Pair<ReportData, ResultPayload> run(File dir, IncrementalState state) throws Exception {
+		ReportComparator comparator = new ReportComparator();
+		ReportData data = comparator.loadData(new File(dir, "amarillo.csv").getPath(), new File(dir, "sfdc.csv").getPath(), new File(dir, "feed.csv").getPath(), state, CONFIG);
+		return Pair.of(data, comparator.compare(START_DATE, END_DATE, "x", CONFIG, data));
+	}
+
+	private static String tenant(int tenant) {
+		return String.format("ab%03d_%d", tenant % 50, tenant);
+	}
+
+	private static String[] amarilloRow(Random random, int tenant) {
+		String[] row = new String[AMARILLO_COLUMNS.size()];
+		Arrays.fill(row, "");
+		set(row, AMARILLO_COLUMNS, "Lead Id", "rm:" + tenant(tenant).replace('_', ':'));
+		set(row, AMARILLO_COLUMNS, "Tenant ID", tenant(tenant));
+		set(row, AMARILLO_COLUMNS, "Fixed Product", random.nextInt(8) == 0 ? "BU" : "RM");
+		set(row, AMARILLO_COLUMNS, "Name", "Name, \"" + tenant + "\"");
+		set(row, AMARILLO_COLUMNS, "Trial Date", String.format("2016-05-%02d 10:11:12.0000000", 1 + random.nextInt(30)));
+		set(row, AMARILLO_COLUMNS, "Valid Leads", random.nextInt(4) == 0 ? "0" : "1");
+		set(row, AMARILLO_COLUMNS, "RM Internal Distributor", "1");
+		set(row, AMARILLO_COLUMNS, "Duplicate", "0");
+		set(row, AMARILLO_COLUMNS, "Marketing Territory", random.nextInt(6) == 0 ? "EMEA" : "NAM");
+		return row;
+	}
+
+	private static String[] sfdcRow(Random random, int tenant) {
+		String[] row = new String[SFDC_COLUMNS.size()];
+		Arrays.fill(row, "");
+		set(row, SFDC_COLUMNS, "Is Valid", random.nextInt(4) == 0 ? "0" : "1");
+		set(row, SFDC_COLUMNS, "Opportunity Name", "Opp " + tenant);
+		set(row, SFDC_COLUMNS, "Tenant MAXRM", tenant(tenant));
+		set(row, SFDC_COLUMNS, "Core Product", random.nextInt(8) == 0 ? "3 - Backup" : "1 - RM");
+		set(row, SFDC_COLUMNS, "Group", "01 - North America");
+		set(row, SFDC_COLUMNS, "Close Date", "06/01/2016");
+		return row;
+	}
+
+	private static void set(String[] row, List<String> columns, String column, String value) {
+		row[columns.indexOf(column)] = value;
+	}
+
+	/** Removes, repeats, moves and changes a few rows */
+	private static void change(Random random, List<String[]> rows, int column) {
+		for (int i = 0; i < 4 && rows.size() > 1; i++) {
+			rows.remove(random.nextInt(rows.size()));
+			rows.add(random.nextInt(rows.size()), rows.get(random.nextInt(rows.size())).clone());
+			Collections.swap(rows, random.nextInt(rows.size()), random.nextInt(rows.size()));
+			String[] row = rows.get(random.nextInt(rows.size())).clone();
+			row[column] = row[column].equals("1") ? "0" : row[column].equals("0") ? "1" : row[column] + "x";
+			rows.set(random.nextInt(rows.size()), row);
+		}
+	}
+
+	private static void write(File file, List<String> columns, List<String[]> rows) throws IOException {
+		StringBuilder buffy = new StringBuilder();
+		buffy.append(line(columns.toArray(new String[0])));
+		for (String[] row : rows) {
+			buffy.append(line(row));
+		}
+		FileUtils.writeStringToFile(file, buffy.toString(), "UTF-8");
+	}
+
+	private static String line(String[] values) {
+		StringBuilder buffy = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) buffy.append(',');
+			buffy.append('"').append(values[i].replace("\"", "\"\"")).append('"');
+		}
+		return buffy.append('\n').toString();
+	}
+
+	private static void assertSameRows(Dataset expected, Dataset actual) {
+		assertArrayEquals(expected.getHeaders(), actual.getHeaders());
+		assertEquals(expected.size(), actual.size());
+		for (int row = 0; row < expected.size(); row++) {
+			assertArrayEquals("row " + row, expected.getRow(row), actual.getRow(row));
+		}
+	}
+
+	private static void assertSamePayload(ResultPayload expected, ResultPayload actual) {
+		assertEquals(expected.getCombined(), actual.getCombined());
+		assertEquals(expected.getBoth(), actual.getBoth());
+		assertEquals(expected.getAmarilloOnly(), actual.getAmarilloOnly());
+		assertEquals(expected.getSfdcOnly(), actual.getSfdcOnly());
+		assertEquals(expected.getSfdcDupes(), actual.getSfdcDupes());
+		assertEquals(expected.getBothValid(), actual.getBothValid());
+		assertEquals(expected.getNeitherValid(), actual.getNeitherValid());
+		assertEquals(expected.getAmarilloValid(), actual.getAmarilloValid());
+		assertEquals(expected.getSfdcValid(), actual.getSfdcValid());
+		assertEquals(expected.getMismatchValidity(), actual.getMismatchValidity());
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.logicnow.comparison;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class NearMatcherTest {
+
+	@Test
+	public void testNearMatches() {
+		Map<String, NearMatcher.Match> matches = NearMatcher.match(
+				Sets.newHashSet("abc_123", "0061a00000xyzab", "d41d8cd98f00b204e9800998ecf8427e", "t_100"),
+				Sets.newHashSet("RM:ABC:123 ", "salesforce:0061A00000XYZAB", "d41d8cd98f00b204e9800998ecf8427f", "t_101"));
+		assertEquals("RM:ABC:123 ", matches.get("abc_123").getMatch());
+		assertEquals(0, matches.get("abc_123").getDistance());
+		assertEquals("abc_123", matches.get("RM:ABC:123 ").getMatch());
+		assertEquals(0, matches.get("0061a00000xyzab").getDistance());
+		assertEquals("d41d8cd98f00b204e9800998ecf8427f", matches.get("d41d8cd98f00b204e9800998ecf8427e").getMatch());
+		assertEquals(1, matches.get("d41d8cd98f00b204e9800998ecf8427e").getDistance());
+		// short keys an edit apart are different tenants
+		assertFalse(matches.containsKey("t_100"));
+		assertFalse(matches.containsKey("t_101"));
+	}
+
+	@Test
+	public void testCommonIdPrefix() {
+		// ids sharing a long prefix share most grams, matches must still be the closest keys
+		Random random = new Random(11);
+		Set<String> left = Sets.newHashSet();
+		Set<String> right = Sets.newHashSet();
+		for (int i = 0; i < 600; i++) {
+			String id = "0061a00000" + randomChars(random, random.nextBoolean() ? 8 : 14);
+			left.add(id);
+			right.add(random.nextInt(3) == 0 ? "0061a00000" + randomChars(random, id.length() - 10) : edit(random, id));
+		}
+		right.removeAll(left);
+		Map<String, NearMatcher.Match> matches = NearMatcher.match(left, right);
+		assertClosest(left, right, matches);
+		assertClosest(right, left, matches);
+		assertTrue(matches.size() > left.size() / 2);
+	}
+
+	private static void assertClosest(Set<String> tenants, Set<String> others, Map<String, NearMatcher.Match> matches) {
+		List<String> sorted = Lists.newArrayList(others);
+		Collections.sort(sorted);
+		for (String tenant : tenants) {
+			String key = NearMatcher.normalize(tenant);
+			String best = null;
+			int bestDistance = NearMatcher.maxDistance(key) + 1;
+			for (String other : sorted) {
+				int distance = NearMatcher.distance(key, NearMatcher.normalize(other), NearMatcher.MAX_DISTANCE);
+				if (distance < bestDistance) {
+					best = other;
+					bestDistance = distance;
+				}
+			}
+			NearMatcher.Match match = matches.get(tenant);
+			assertEquals(tenant, best, match != null ? match.getMatch() : null);
+			if (match != null) assertEquals(tenant, bestDistance, match.getDistance());
+		}
+	}
+
+	private static String randomChars(Random random, int length) {
+		StringBuilder buffy = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			buffy.append(Character.forDigit(random.nextInt(36), 36));
+		}
+		return buffy.toString();
+	}
+
+	/** Applies one or two random substitutions, insertions or deletions after the prefix */
+	private static String edit(Random random, String id) {
+		StringBuilder buffy = new StringBuilder(id);
+		for (int edits = 1 + random.nextInt(2); edits > 0; edits--) {
+			int at = 10 + random.nextInt(buffy.length() - 10);
+			switch (random.nextInt(3)) {
+			case 0: buffy.setCharAt(at, Character.forDigit(random.nextInt(36), 36)); break;
+			case 1: buffy.insert(at, Character.forDigit(random.nextInt(36), 36)); break;
+			default: buffy.deleteCharAt(at); break;
+			}
+		}
+		return buffy.toString();
+	}
+
+	@Test
+	public void testBoundedDistance() {
+		assertEquals(3, NearMatcher.distance("kitten", "sitting", 5));
+		assertEquals(2, NearMatcher.distance("kitten", "sitting", 1));
+		assertEquals(0, NearMatcher.distance("", "", 2));
+	}
+
+}
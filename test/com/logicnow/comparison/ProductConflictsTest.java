@@ -0,0 +1,63 @@
+package com.logicnow.comparison;
+
+import static com.logicnow.comparison.TenantClassification.AMARILLO_VALID;
+import static com.logicnow.comparison.TenantClassification.IN_AMARILLO;
+import static com.logicnow.comparison.TenantClassification.IN_SFDC;
+import static com.logicnow.comparison.TenantClassification.SFDC_VALID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.logicnow.comparison.ProductConflicts.Conflict;
+
+public class ProductConflictsTest {
+
+	@Test
+	public void testConflicts() {
+		assertConflicts(null);
+	}
+
+	@Test
+	public void testConflictsOverSharedDictionary() {
+		assertConflicts(new TenantDictionary(Arrays.asList("T1", "T2", "T3", "T4", "T5")));
+	}
+
+	private static void assertConflicts(TenantDictionary tenants) {
+		ResultPayload rm = new ResultPayload(null, null, null, null, null, null);
+		ResultPayload rmit = new ResultPayload(null, null, null, null, null, null);
+		ResultPayload mm = new ResultPayload(null, null, null, null, null, null);
+		if (tenants != null) {
+			rm.setTenants(tenants);
+			rmit.setTenants(tenants);
+			mm.setTenants(tenants);
+		}
+		TenantClassification.add(rm, "T1", IN_AMARILLO | IN_SFDC | AMARILLO_VALID | SFDC_VALID);
+		TenantClassification.add(rm, "T2", IN_AMARILLO | AMARILLO_VALID);
+		TenantClassification.add(rm, "T3", IN_SFDC | SFDC_VALID);
+		TenantClassification.add(rmit, "T1", IN_SFDC | SFDC_VALID);
+		TenantClassification.add(rmit, "T2", IN_AMARILLO);
+		TenantClassification.add(mm, "T4", IN_AMARILLO);
+		TenantClassification.add(mm, "T1", IN_AMARILLO | AMARILLO_VALID);
+
+		List<Conflict> conflicts = ProductConflicts.find(rm, rmit, mm);
+		assertEquals(2, conflicts.size());
+		assertEquals("T1", conflicts.get(0).getTenant());
+		assertFalse(conflicts.get(0).isValidityConflict());
+		assertEquals(IN_SFDC | SFDC_VALID, conflicts.get(0).getFlags(1));
+		assertEquals("T2", conflicts.get(1).getTenant());
+		assertTrue(conflicts.get(1).isValidityConflict());
+		assertEquals(0, conflicts.get(1).getFlags(2));
+		assertEquals(IN_AMARILLO | IN_SFDC | AMARILLO_VALID | SFDC_VALID, conflicts.get(0).getFlags(0));
+		assertEquals(IN_AMARILLO | AMARILLO_VALID, conflicts.get(0).getFlags(2));
+
+		assertEquals("In Both, Both Valid", ProductConflicts.describe(conflicts.get(0).getFlags(0)));
+		assertEquals("Amarillo Only, Neither Valid", ProductConflicts.describe(conflicts.get(1).getFlags(1)));
+		assertEquals("", ProductConflicts.describe(0));
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.logicnow.comparison;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TenantIdCodecTest {
+
+	@Test
+	public void testProductIds() {
+		TenantIdCodec rm = TenantIdCodec.of("RM(IT)");
+		assertSame(rm, TenantIdCodec.of("RM"));
+		assertEquals("abc_123", rm.toTenant("rm:abc:123"));
+		assertEquals("0061234", rm.toTenant("salesforce:0061234"));
+		assertEquals("rm:abc:123", rm.toLeadId("abc_123"));
+		assertSame(rm.toLeadId("abc_123"), rm.toLeadId("abc_123"));
+		assertEquals("42", TenantIdCodec.of("BU").toTenant("backup:42"));
+		assertEquals("backup:42", TenantIdCodec.of("BU").toLeadId("42"));
+		assertEquals("mail:7", TenantIdCodec.of("MM").toLeadId("mail:7"));
+		assertEquals(null, TenantIdCodec.of(null).toTenant(null));
+	}
+
+}
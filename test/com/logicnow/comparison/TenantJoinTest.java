@@ -0,0 +1,135 @@
+package com.logicnow.comparison;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.logicnow.comparison.data.Column;
+import com.logicnow.comparison.data.StringColumn;
+
+public class TenantJoinTest {
+
+	@Test
+	public void testPartitionedJoinMatchesSequential() {
+		Random random = new Random(11);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int i = 0; i < 50; i++) {
+			TenantJoin join = new TenantJoin(pool, 1 + random.nextInt(100));
+			String[] left = randomTenants(random, random.nextInt(2000));
+			String[] right = randomTenants(random, random.nextInt(2000));
+			TenantRowIndex leftMap = join.group(left.length, row -> left[row]);
+			TenantRowIndex rightMap = join.group(right.length, row -> right[row]);
+			assertEquals(Lists.newArrayList(group(left).entrySet()), Lists.newArrayList(leftMap.entrySet()));
+			assertEquals(Lists.newArrayList(group(right).entrySet()), Lists.newArrayList(rightMap.entrySet()));
+			for (Map.Entry<String, List<Integer>> tenant : group(left).entrySet()) {
+				assertEquals(tenant.getValue(), leftMap.get(tenant.getKey()));
+			}
+			for (int t = 0; t < leftMap.size(); t++) {
+				List<Integer> rows = leftMap.getRows(t);
+				assertEquals(rows.size(), leftMap.getRowCount(t));
+				for (int r = 0; r < rows.size(); r++) {
+					assertEquals((int) rows.get(r), leftMap.getRow(t, r));
+				}
+			}
+			assertEquals(null, leftMap.get("T600"));
+			assertFalse(leftMap.containsKey("T600"));
+
+			Column leftValid = randomValidity(random, left.length);
+			Column rightValid = randomValidity(random, right.length);
+			TenantClassification classification = new TenantClassification(leftMap, rightMap, leftValid, rightValid);
+			Set<String> tenants = Sets.newHashSet(leftMap.keySet());
+			tenants.addAll(rightMap.keySet());
+			tenants.add("T600");
+			ResultPayload joined = new ResultPayload(null, null, null, null, null, null);
+			joined.setTenants(new TenantDictionary(tenants));
+			Reconciliation reconciliation = join.reconcile(joined.getTenants(), Arrays.asList(
+					new Reconciliation.Source("Left", leftMap, leftValid), new Reconciliation.Source("Right", rightMap, rightValid)));
+			TenantClassification.set(joined, reconciliation, 0, 1);
+			assertEquals(0, reconciliation.getVector("T600"));
+			ResultPayload expected = new ResultPayload(null, null, null, null, null, null);
+			Set<String> combined = Sets.newHashSet(leftMap.keySet());
+			combined.addAll(rightMap.keySet());
+			for (String tenant : combined) {
+				TenantClassification.add(expected, tenant, classification.classify(tenant));
+			}
+			assertEquals(expected.getCombined(), joined.getCombined());
+			assertEquals(expected.getBoth(), joined.getBoth());
+			assertEquals(expected.getAmarilloOnly(), joined.getAmarilloOnly());
+			assertEquals(expected.getSfdcOnly(), joined.getSfdcOnly());
+			assertEquals(expected.getSfdcDupes(), joined.getSfdcDupes());
+			assertEquals(expected.getBothValid(), joined.getBothValid());
+			assertEquals(expected.getNeitherValid(), joined.getNeitherValid());
+			assertEquals(expected.getAmarilloValid(), joined.getAmarilloValid());
+			assertEquals(expected.getSfdcValid(), joined.getSfdcValid());
+			assertEquals(expected.getMismatchValidity(), joined.getMismatchValidity());
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testReconcileSources() {
+		TenantJoin join = new TenantJoin();
+		String[] amarillo = { "T1", "T2", "T2" };
+		String[] sfdc = { "T2", "T3", "T3" };
+		String[] feed = { "T3", "T4" };
+		Reconciliation reconciliation = join.reconcile(new TenantDictionary(Arrays.asList("T1", "T2", "T3", "T4")), Arrays.asList(
+				new Reconciliation.Source("Amarillo", join.group(amarillo.length, row -> amarillo[row]), new StringColumn(new String[] { "1", "1", "0" })),
+				new Reconciliation.Source("SFDC", join.group(sfdc.length, row -> sfdc[row]), null),
+				new Reconciliation.Source("Feed", join.group(feed.length, row -> feed[row]), null)));
+		assertEquals(2, reconciliation.indexOf("Feed"));
+		assertEquals(0b000011, reconciliation.getVector("T1"));
+		assertEquals(0b001101, reconciliation.getVector("T2"));
+		assertEquals(0b111100, reconciliation.getVector("T3"));
+		assertEquals(0b110000, reconciliation.getVector("T4"));
+		assertEquals(Sets.newHashSet("T2"), reconciliation.getDuplicates(0));
+		assertEquals(Sets.newHashSet("T3"), reconciliation.getDuplicates(1));
+		assertEquals(Sets.newHashSet("T1"), reconciliation.getValid(0));
+
+		// tenants outside the dictionary are left out
+		Reconciliation classified = join.reconcile(new TenantDictionary(Arrays.asList("T1", "T2", "T3")), Arrays.asList(
+				new Reconciliation.Source("Feed", join.group(feed.length, row -> feed[row]), null)));
+		assertEquals(Sets.newHashSet("T3"), classified.getMembers(0));
+		assertEquals(0, classified.getVector("T4"));
+	}
+
+	private static Map<String, List<Integer>> group(String[] tenants) {
+		Map<String, List<Integer>> map = Maps.newLinkedHashMap();
+		for (int row = 0; row < tenants.length; row++) {
+			List<Integer> rows = map.get(tenants[row]);
+			if (rows == null) {
+				rows = Lists.newArrayList();
+				map.put(tenants[row], rows);
+			}
+			rows.add(row);
+		}
+		return map;
+	}
+
+	private static String[] randomTenants(Random random, int size) {
+		String[] tenants = new String[size];
+		for (int row = 0; row < size; row++) {
+			tenants[row] = random.nextInt(50) == 0 ? null : "T" + random.nextInt(600);
+		}
+		return tenants;
+	}
+
+	private static Column randomValidity(Random random, int size) {
+		String[] valid = new String[size];
+		for (int row = 0; row < size; row++) {
+			valid[row] = random.nextInt(10) == 0 ? "0" : "1";
+		}
+		return new StringColumn(valid);
+	}
+
+}
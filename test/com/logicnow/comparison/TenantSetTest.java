@@ -0,0 +1,50 @@
+package com.logicnow.comparison;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.logicnow.comparison.utils.CompUtils;
+
+public class TenantSetTest {
+
+	@Test
+	public void testBitmapSets() {
+		TenantDictionary tenants = new TenantDictionary(Arrays.asList("T3", "T1", null, "T2", "T1", "T10"));
+		assertEquals(5, tenants.size());
+		assertEquals(null, tenants.getTenant(0));
+		assertEquals(-1, tenants.idOf("T4"));
+
+		TenantSet left = tenants.newSet();
+		left.addAll(Arrays.asList("T3", "T1", "T10"));
+		TenantSet right = tenants.newSet();
+		right.addAll(Arrays.asList("T10", "T2", null));
+		assertFalse(left.add("T1"));
+		assertTrue(left.contains("T10"));
+		assertFalse(left.contains("T4"));
+		assertEquals(Lists.newArrayList("T1", "T10", "T3"), Lists.newArrayList(left));
+		assertEquals(Lists.newArrayList(null, "T1", "T10", "T2", "T3"), Lists.newArrayList(left.or(right)));
+		assertEquals(Sets.newHashSet("T10"), left.and(right));
+		assertEquals(Sets.newHashSet("T1", "T3"), left.andNot(right));
+
+		Set<String> combined = left.or(right);
+		assertEquals(Sets.newHashSet("T1", "T3"), CompUtils.difference(combined, right, Sets.newHashSet("T4")));
+		assertTrue(combined.remove("T10"));
+		assertFalse(combined.remove("T4"));
+		assertEquals(4, combined.size());
+		assertEquals(3, left.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTenantNotInDictionary() {
+		new TenantDictionary(Arrays.asList("T1")).newSet().add("T2");
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.logicnow.comparison.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class CsvEngineTest {
+
+	private static final String[] VALUES = { "", "abc", "Name, Inc", "say \"hi\"", "line1\nline2", "line1\r\nline2", "caf\u00e9 \u4e2d", "=\"123.456\"", "a\\b", "C:\\\\dir", " spaced " };
+	// written as-is: quotes inside unquoted values, text after a closing quote, an escape opening a value
+	private static final String[] RAW = { "bc\"d\"ef", "\"abc\"def", "\"b\" ", "a\"\"b", "ab\"c\"", "\\\"a\"" };
+	// random fields of these, for whitespace before quotes and escapes at line breaks
+	private static final char[] BYTES = { ' ', '"', '\\', ',', '\n', '\r', 'a' };
+
+	@Test
+	public void testMappedMatchesOpenCsv() throws Exception {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			CsvOptions options = CsvOptions.DEFAULT;
+			File file = writeRandomFile(random, random.nextBoolean());
+			assertSameRecords(file, options, new MappedCsvEngine());
+		}
+	}
+
+	@Test
+	public void testParallelMatchesOpenCsv() throws Exception {
+		Random random = new Random(7);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int i = 0; i < 200; i++) {
+			CsvOptions options = CsvOptions.DEFAULT;
+			File file = writeRandomFile(random, random.nextBoolean());
+			assertSameRecords(file, options, new ParallelCsvEngine(pool, 1 + random.nextInt(200)));
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testParallelBoundariesAfterEscapeStartingValue() throws Exception {
+		// the escape before a value's first quote is dropped, so that quote opens quoting
+		StringBuilder buffy = new StringBuilder("TenantID,Notes,Flag\n");
+		for (int r = 0; r < 200; r++) {
+			buffy.append("T").append(r).append(r % 3 == 0 ? ",\\\"said, hi\"" : ",\"line1\nline2\"").append(",x\n");
+		}
+		File file = writeFile(buffy.toString());
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = MappedCsvEngine.map(file, channel);
+			Set<Integer> records = Sets.newHashSet();
+			MappedCsvTokenizer tokenizer = new MappedCsvTokenizer(buffer, 0, buffer.limit(), CsvOptions.DEFAULT);
+			while (tokenizer.next()) {
+				records.add(tokenizer.position());
+			}
+			for (int chunk = 5; chunk < 200; chunk += 7) {
+				for (int bound : new ParallelCsvEngine(pool, chunk).findBoundaries(buffer, 20, buffer.limit(), CsvOptions.DEFAULT)) {
+					assertTrue("chunk " + chunk + " bound " + bound, records.contains(bound));
+				}
+				assertSameRecords(file, CsvOptions.DEFAULT, new ParallelCsvEngine(pool, chunk));
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBackslashEscapedQuotes() throws Exception {
+		File file = writeFile("\"TenantID\",\"Notes\"\n\"T1\",\"said \\\"hi\\\" there\"\n\n\"T2\",\"after blank\"\n");
+		Pair<String[], List<String[]>> records = new MappedCsvEngine().read(file, CsvOptions.DEFAULT, new ArrayMapper());
+		assertArrayEquals(new String[] { "TenantID", "Notes" }, records.getLeft());
+		assertEquals(1, records.getRight().size());
+		assertArrayEquals(new String[] { "T1", "said \"hi\" there" }, records.getRight().get(0));
+	}
+
+	@Test
+	public void testFeedLinesAsRewrittenBefore() throws Exception {
+		// feeds used to be read after rewriting \" to ", the escape now reads them the same
+		String[] lines = { "\"T1\",\"2016-04-20\",\"New Business\",\"said \\\"hi\\\" there\"", "\"T2\",\"\",\"Renewal\",\"\\\"quoted\\\"\"",
+				"\"T3\",\"C:\\\\dir\",\"LN - MAX RM\"", "T4,2016-05-01,LN - MAX Backup" };
+		for (String line : lines) {
+			assertArrayEquals(line, readLine(line.replace("\\\"", "\"")), readLine(line));
+		}
+		// except where the rewritten quotes closed quoting early, which split or lost values
+		assertArrayEquals(new String[] { "T5", "O\"Brien \"Jr\"", "EMEA" }, readLine("\"T5\",\"O\\\"Brien \\\"Jr\\\"\",\"EMEA\""));
+		assertArrayEquals(new String[] { "T5" }, readLine("\"T5\",\"O\"Brien \"Jr\"\",\"EMEA\""));
+		assertArrayEquals(new String[] { "T6", "say \"a, b\" ok" }, readLine("\"T6\",\"say \\\"a, b\\\" ok\""));
+		assertArrayEquals(new String[] { "T6", "say \"a", " b\" ok" }, readLine("\"T6\",\"say \"a, b\" ok\""));
+		// and where a value ended with an escaped \
+		assertArrayEquals(new String[] { "T7", "path\\" }, readLine("\"T7\",\"path\\\\\""));
+		assertArrayEquals(new String[] { "T7" }, readLine("\"T7\",\"path\\\""));
+	}
+
+	private static String[] readLine(String line) throws IOException {
+		File file = writeFile("TenantID,Value\n" + line + "\n");
+		for (CsvEngine engine : new CsvEngine[] { new MappedCsvEngine(), new ParallelCsvEngine() }) {
+			assertSameRecords(file, CsvOptions.DEFAULT, engine);
+		}
+		return new OpenCsvEngine().read(file, CsvOptions.DEFAULT, new ArrayMapper()).getRight().get(0);
+	}
+
+	@Test
+	public void testIncrementalMatchesOpenCsv() throws Exception {
+		Random random = new Random(9);
+		CsvEngine[] engines = { new OpenCsvEngine(), new MappedCsvEngine(), new ParallelCsvEngine() };
+		for (int i = 0; i < 200; i++) {
+			CsvOptions options = CsvOptions.DEFAULT;
+			File file = writeRandomFile(random, random.nextBoolean());
+			Pair<String[], List<String[]>> expected = new OpenCsvEngine().read(file, options, new ArrayMapper());
+			CsvEngine engine = engines[i % engines.length];
+			IncrementalCsvReader.Result<String[]> actual = IncrementalCsvReader.read(file, options, engine, new long[0], new ArrayMapper());
+			assertArrayEquals(expected.getLeft(), actual.getHeaders());
+			assertEquals(expected.getRight().size(), actual.getRecords().size());
+			for (int row = 0; row < expected.getRight().size(); row++) {
+				assertArrayEquals(engine.getClass().getSimpleName() + " row " + row, expected.getRight().get(row), actual.getRecords().get(row));
+			}
+		}
+	}
+
+	@Test
+	public void testQuotesInsideValues() throws Exception {
+		File file = writeFile("h1,h2,h3\na,bc\"d\"ef,\"abc\"def\n\"abc\"def,x,y\na,\"b\" ,c\n\"T9\",\"unterminated\n");
+		Pair<String[], List<String[]>> records = new MappedCsvEngine().read(file, CsvOptions.DEFAULT, new ArrayMapper());
+		assertEquals(4, records.getRight().size());
+		assertArrayEquals(new String[] { "a", "bc\"d\"ef", "abc\"def" }, records.getRight().get(0));
+		assertArrayEquals(new String[] { "abc\"def", "x", "y" }, records.getRight().get(1));
+		assertArrayEquals(new String[] { "a", "b\" ", "c" }, records.getRight().get(2));
+		// opencsv drops a value left open at the end of the file
+		assertArrayEquals(new String[] { "T9" }, records.getRight().get(3));
+		assertSameRecords(file, CsvOptions.DEFAULT, new MappedCsvEngine());
+	}
+
+	@Test
+	public void testWhitespaceBeforeQuote() throws Exception {
+		File file = writeFile("h1,h2\nT1, \"Acme, Inc\"\na, \"b, c\"\na,  \"b\"c\nx,\"\n   \"y,z\n");
+		Pair<String[], List<String[]>> records = new MappedCsvEngine().read(file, CsvOptions.DEFAULT, new ArrayMapper());
+		assertEquals(4, records.getRight().size());
+		assertArrayEquals(new String[] { "T1", "Acme, Inc" }, records.getRight().get(0));
+		assertArrayEquals(new String[] { "a", "b, c" }, records.getRight().get(1));
+		assertArrayEquals(new String[] { "a", "b\"c" }, records.getRight().get(2));
+		// the line break read so far is whitespace too
+		assertArrayEquals(new String[] { "x", "y", "z" }, records.getRight().get(3));
+		assertSameRecords(file, CsvOptions.DEFAULT, new MappedCsvEngine());
+		assertSameRecords(file, CsvOptions.DEFAULT, new ParallelCsvEngine(new ForkJoinPool(2), 4));
+	}
+
+	@Test
+	public void testIncrementalReadMapsOnlyNewRecords() throws Exception {
+		File first = writeFile("\"TenantID\",\"Valid\"\n\"T1\",\"1\"\n\"T2\",\"1\"\n\"T2\",\"1\"\n\"T3\",\"0\"\n");
+		IncrementalCsvReader.Result<String[]> previous = IncrementalCsvReader.read(first, CsvOptions.DEFAULT, new OpenCsvEngine(), new long[0], new ArrayMapper());
+		assertEquals(4, previous.getRecords().size());
+		File second = writeFile("\"TenantID\",\"Valid\"\r\n\"T2\",\"1\"\r\n\"T1\",\"1\"\r\n\"T3\",\"1\"\r\n\"T2\",\"1\"\r\n\"T4\",\"1\"\r\n");
+		IncrementalCsvReader.Result<String[]> next = IncrementalCsvReader.read(second, CsvOptions.DEFAULT, new OpenCsvEngine(), previous.getFingerprints(), new ArrayMapper());
+		assertArrayEquals(new String[] { "TenantID", "Valid" }, next.getHeaders());
+		assertArrayEquals(new int[] { 1, 0, -1, 2, -1 }, next.getPreviousRows());
+		assertEquals(2, next.getRecords().size());
+		assertArrayEquals(new String[] { "T3", "1" }, next.getRecords().get(0));
+		assertArrayEquals(new String[] { "T4", "1" }, next.getRecords().get(1));
+	}
+
+	protected static void assertSameRecords(File file, CsvOptions options, CsvEngine engine) throws IOException {
+		Pair<String[], List<String[]>> expected = new OpenCsvEngine().read(file, options, new ArrayMapper());
+		Pair<String[], List<String[]>> actual = engine.read(file, options, new ArrayMapper());
+		assertArrayEquals(expected.getLeft(), actual.getLeft());
+		assertEquals(expected.getRight().size(), actual.getRight().size());
+		for (int i = 0; i < expected.getRight().size(); i++) {
+			assertArrayEquals("row " + i, expected.getRight().get(i), actual.getRight().get(i));
+		}
+	}
+
+	protected static File writeRandomFile(Random random, boolean backslashEscaped) throws IOException {
+		StringBuilder buffy = new StringBuilder();
+		if (random.nextBoolean()) buffy.append('\ufeff');
+		String eol = random.nextBoolean() ? "\n" : "\r\n";
+		int columns = 1 + random.nextInt(6);
+		int rows = random.nextInt(400);
+		for (int r = 0; r <= rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				if (c > 0) buffy.append(',');
+				String value = VALUES[random.nextInt(VALUES.length)];
+				if (r > 0 && c == 0 && "".equals(value)) value = "x";
+				if (random.nextInt(16) == 0) {
+					for (int i = random.nextInt(8); i >= 0; i--) {
+						buffy.append(BYTES[random.nextInt(BYTES.length)]);
+					}
+				} else if (random.nextInt(8) == 0) {
+					buffy.append(RAW[random.nextInt(RAW.length)]);
+				} else if (value.matches("[a-z]*") && random.nextBoolean()) {
+					buffy.append(value);
+				} else if (backslashEscaped) {
+					buffy.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+				} else {
+					buffy.append('"').append(value.replace("\"", "\"\"")).append('"');
+				}
+			}
+			if (r < rows || random.nextBoolean()) buffy.append(eol);
+		}
+		return writeFile(buffy.toString());
+	}
+
+	protected static File writeFile(String content) throws IOException {
+		File file = File.createTempFile("csv-engine", ".csv");
+		file.deleteOnExit();
+		FileUtils.writeStringToFile(file, content, "UTF-8");
+		return file;
+	}
+
+	protected static class ArrayMapper implements CsvRowMapper<String[]> {
+		public void header(String[] header) { }
+		public String[] map(CsvRow row) { return row.toArray(); }
+	}
+
+}
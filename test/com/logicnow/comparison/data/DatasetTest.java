@@ -0,0 +1,242 @@
+package com.logicnow.comparison.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonReader;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.logicnow.comparison.ComparatorConfig;
+import com.logicnow.comparison.ReportComparator;
+import com.logicnow.comparison.utils.CompUtils;
+
+public class DatasetTest {
+
+	private static final String[] HEADERS = new String[] { "Tenant ID", "Valid", "Close Date", "Group" };
+
+	@Test
+	public void testTypedColumnsKeepText() {
+		Dataset data = Dataset.of(HEADERS, createRows(), ImmutableMap.of("Valid", ColumnType.INTEGER, "Close Date", ColumnType.DATE));
+		assertEquals(ColumnType.INTEGER, data.getColumn("Valid").getType());
+		assertEquals(ColumnType.DATE, data.getColumn("Close Date").getType());
+		for (int row = 0; row < data.size(); row++) {
+			assertArrayEquals(createRows().get(row), data.getRow(row));
+		}
+		Column valid = data.getColumn("Valid");
+		assertTrue(valid.valueEquals(0, "1"));
+		assertFalse(valid.valueEquals(1, "1"));
+		assertTrue(valid.valueEquals(1, "1.0"));
+		assertEquals(1, valid.getInt(1));
+		assertFalse(valid.hasInt(2));
+		assertFalse(valid.hasInt(3));
+		assertEquals(Column.NO_DATE, data.getColumn("Close Date").getMillis(3));
+	}
+
+	@Test
+	public void testDictionaryEncoding() {
+		Dataset data = Dataset.of(HEADERS, createRows(), null);
+		Column group = data.getColumn("Group");
+		Dictionary dictionary = group.getDictionary();
+		assertEquals(2, dictionary.size());
+		assertEquals(group.getCode(0), group.getCode(1));
+		assertEquals(dictionary.codeOf("ROW"), group.getCode(3));
+		assertEquals(-1, dictionary.codeOf("LATAM"));
+		assertSame(group.getString(0), group.getString(1));
+		assertEquals(null, data.getColumn("Tenant ID").getDictionary());
+		Column selected = group.select(new int[] { 3, 0 });
+		assertEquals(dictionary.codeOf("NAM"), selected.getCode(1));
+		assertSame(dictionary.getMapped(selected.getCode(1), CompUtils.REGION_MAPPING), CompUtils.mappedRegion("NAM").intern());
+	}
+
+	@Test
+	public void testColumnRefs() {
+		Dataset data = Dataset.of(HEADERS, createRows(), null);
+		Dataset projected = data.project(new int[] { 3, 0, 3 });
+		ColumnRef group = ColumnRef.of("Group");
+		assertSame(data.getColumn(3), group.in(data));
+		assertEquals("ROW", group.getString(data, 2));
+		assertSame(projected.getColumn(0), group.in(projected));
+		assertEquals(0, projected.indexOf("Group"));
+		assertEquals(-1, projected.indexOf("Valid"));
+		assertTrue(ColumnRef.of("Missing").in(data) == null);
+		assertNull(ColumnRef.of("Missing").getString(data, 0));
+		// each dataset resolves the handle on its own
+		assertEquals("NAM", group.getString(data, 0));
+		assertEquals("ROW", group.getString(projected, 2));
+		assertSame(data.getColumn(3), data.getColumn(group));
+	}
+
+	@Test
+	public void testViews() {
+		Dataset data = Dataset.of(HEADERS, createRows(), null);
+		Dataset view = data.project(new int[] { 3, 0 }).select(new int[] { 3, 1, 2 }).select(new int[] { 2, 0 });
+		assertArrayEquals(new String[] { "Group", "Tenant ID" }, view.getHeaders());
+		assertEquals(2, view.size());
+		assertArrayEquals(new String[] { "ROW", "t3" }, view.getRow(0));
+		assertArrayEquals(new String[] { "ROW", "t4" }, view.getRow(1));
+		Dataset extended = view.withColumn("Generated", new StringColumn(new String[] { "a", "b" }));
+		assertEquals("b", extended.getString(1, 2));
+	}
+
+	@Test
+	public void testFilterColumns() {
+		ComparatorConfig config = createConfig();
+		Dataset data = Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config));
+		Dataset filtered = CompUtils.filterColumns(config, data, "Close Date");
+		assertArrayEquals(new String[] { "Tenant ID", "Valid", "Group", "Close Date" }, filtered.getHeaders());
+		assertEquals(1, filtered.size());
+		assertEquals("t1", filtered.getString(0, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingConfigColumn() {
+		ComparatorConfig config = createConfig("\"Tenant ID\", \"Valid\", \"Group\", \"Missing\"");
+		CompUtils.filterColumns(config, Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config)), "Close Date");
+	}
+
+	@Test
+	public void testDates() {
+		long day = Dates.parseMillis("2016-05-18");
+		assertEquals(day, Dates.parseMillis("5/18/2016"));
+		assertEquals(day, Dates.parseMillis("05/18/2016 10:00 AM"));
+		assertEquals(day + 37872000L, Dates.parseMillis("2016-05-18 10:31:12.0000000"));
+		assertEquals(day + 37872500L, Dates.parseMillis("2016-05-18 10:31:12.5"));
+		assertEquals(Dates.parseMillis("2016-06-01"), Dates.parseMillis("2016-05-32"));
+		assertEquals(Column.NO_DATE, Dates.parseMillis("n/a"));
+		assertEquals("05/18/2016", Dates.Format.US_DATE.format(day));
+		Dates.Parser parser = new Dates.Parser();
+		assertEquals(day, parser.parse("5/18/2016"));
+		// a detected format only reads values it fully matches
+		assertEquals(day + 37872000L, parser.parse("2016-05-18 10:31:12.0"));
+		assertEquals(day, parser.parse("2016-05-18"));
+	}
+
+	@Test
+	public void testFilteredRead() throws Exception {
+		ComparatorConfig config = createConfig("\"Close Date\", \"Group\", \"Valid\"");
+		StringBuilder csv = new StringBuilder("\"Tenant ID\",\"Valid\",\"Close Date\",\"Group\"\n");
+		for (String[] row : createRows()) {
+			csv.append('"').append(String.join("\",\"", row)).append("\"\n");
+		}
+		Dataset read = new ReportComparator().getCsvData("test", config, new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+		Dataset expected = CompUtils.filterColumns(config, Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config)));
+		assertArrayEquals(new String[] { "Close Date", "Group", "Valid" }, read.getHeaders());
+		assertArrayEquals(expected.getHeaders(), read.getHeaders());
+		assertEquals(expected.size(), read.size());
+		for (int row = 0; row < expected.size(); row++) {
+			assertArrayEquals(expected.getRow(row), read.getRow(row));
+		}
+		assertEquals(ColumnType.DATE, read.getColumn("Close Date").getType());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		File csv = File.createTempFile("dataset", ".csv");
+		File snapshot = DatasetSnapshot.getFile(csv);
+		try {
+			List<String[]> rows = createRows();
+			rows.add(new String[] { "t5 \u00e9", "2", "2016-05-20", "NAM" });
+			Dataset data = Dataset.of(HEADERS, rows, ImmutableMap.of("Valid", ColumnType.INTEGER, "Close Date", ColumnType.DATE));
+			String key = DatasetSnapshot.key(csv, "test");
+			DatasetSnapshot.write(csv, key, data);
+			assertEquals(null, DatasetSnapshot.load(csv, DatasetSnapshot.key(csv, "other")));
+			Dataset loaded = DatasetSnapshot.load(csv, key);
+			assertArrayEquals(HEADERS, loaded.getHeaders());
+			assertEquals(data.size(), loaded.size());
+			for (int row = 0; row < data.size(); row++) {
+				assertArrayEquals(data.getRow(row), loaded.getRow(row));
+				assertEquals(data.getColumn(2).getMillis(row), loaded.getColumn(2).getMillis(row));
+			}
+			assertEquals(ColumnType.INTEGER, loaded.getColumn(1).getType());
+			assertEquals(1, loaded.getColumn(1).getInt(1));
+			assertEquals(data.getColumn(3).getCode(2), loaded.getColumn(3).getCode(2));
+		} finally {
+			csv.delete();
+			snapshot.delete();
+		}
+	}
+
+	private ComparatorConfig createConfig() {
+		return createConfig("\"Tenant ID\", \"Valid\", \"Group\"");
+	}
+
+	private ComparatorConfig createConfig(String cols) {
+		String json = "{ \"cols\": [" + cols + "], \"coltypes\": { \"Valid\": \"integer\" },"
+				+ " \"filters\": { \"include\": [[\"Group\", \"=\", \"NAM\"]], \"exclude\": [[\"Close Date\", \"<\", \"$START_DATE\"], [\"Valid\", \"=\", \"0\"]] } }";
+		JsonReader reader = Json.createReader(new StringReader(json));
+		ComparatorConfig config = new ComparatorConfig(reader.readObject());
+		reader.close();
+		CompUtils.addDatesToConfig(config, "2016-05-10", "2016-06-09");
+		return config;
+	}
+
+	@Test
+	public void testRowsEqual() {
+		Dataset data = Dataset.of(HEADERS, createRows(), ImmutableMap.of("Valid", ColumnType.INTEGER));
+		assertEquals(BitSet.valueOf(new long[] { 0b0001 }), data.getColumn("Valid").getRowsEqual("1"));
+		assertEquals(BitSet.valueOf(new long[] { 0b1100 }), data.getColumn("Group").getRowsEqual("ROW"));
+		assertTrue(data.getColumn("Group").getRowsEqual("LATAM").isEmpty());
+		Column selected = data.getColumn("Group").select(new int[] { 3, 0, 2 });
+		assertEquals(BitSet.valueOf(new long[] { 0b101 }), selected.getRowsEqual("ROW"));
+		assertSame(selected.getRowsEqual("ROW"), selected.getRowsEqual("ROW"));
+	}
+
+	@Test
+	public void testBitmapIndex() {
+		BitmapIndex index = BitmapIndex.of(new StringColumn(new String[] { "NAM", "ROW", "NAM", "", "EMEA" }));
+		assertEquals(BitSet.valueOf(new long[] { 0b00101 }), index.get("NAM"));
+		assertTrue(index.get("LATAM").isEmpty());
+		assertEquals(BitSet.valueOf(new long[] { 0b10010 }), index.select(value -> value.length() > 3 || value.startsWith("R")));
+		String[] distinct = new String[BitmapIndex.MAX_VALUES + 1];
+		for (int i = 0; i < distinct.length; i++) {
+			distinct[i] = "t" + i;
+		}
+		assertNull(BitmapIndex.of(new StringColumn(distinct)));
+		assertNotNull(BitmapIndex.of(new StringColumn(Arrays.copyOf(distinct, BitmapIndex.MAX_VALUES))));
+	}
+
+	@Test
+	public void testDerivedColumn() {
+		Dataset data = Dataset.of(HEADERS, createRows(), null);
+		Column ids = data.getColumn("Tenant ID");
+		int[] derived = new int[1];
+		Dataset withKey = data.withColumn("Key", new DerivedColumn(data.size(), row -> {
+			derived[0]++;
+			return ids.getString(row).toUpperCase();
+		}));
+		assertEquals(0, derived[0]);
+		Dataset selected = withKey.select(new int[] { 2, 3 });
+		assertEquals("T3", selected.getColumn("Key").getString(0));
+		assertEquals("T3", withKey.getColumn("Key").getString(2));
+		assertEquals(1, derived[0]);
+		assertArrayEquals(new String[] { "t4", "n/a", "", "ROW", "T4" }, selected.getRow(1));
+		assertEquals(2, derived[0]);
+	}
+
+	private List<String[]> createRows() {
+		List<String[]> rows = Lists.newArrayList();
+		rows.add(new String[] { "t1", "1", "5/18/2016", "NAM" });
+		rows.add(new String[] { "t2", "1.0", "5/01/2016", "NAM" });
+		rows.add(new String[] { "t3", "", "5/18/2016", "ROW" });
+		rows.add(new String[] { "t4", "n/a", "", "ROW" });
+		return rows;
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.logicnow.comparison.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonReader;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.logicnow.comparison.ComparatorConfig;
+import com.logicnow.comparison.ExecutionPlan;
+import com.logicnow.comparison.data.Dataset;
+import com.logicnow.comparison.utils.CompUtils;
+
+public class RowFilterTest {
+
+	private static final String[] HEADERS = new String[] { "Tenant ID", "Valid", "Close Date", "Group" };
+
+	@Test
+	public void testCompiledFilters() {
+		ComparatorConfig config = createConfig("[[\"Group\", \"startsWith\", \"N\"]]", "[[\"Close Date\", \"<\", \"$START_DATE\"], [\"Valid\", \"=\", \"0\"]]");
+		Dataset data = Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config));
+		RowFilter filter = RowFilter.compile(config, data);
+		assertArrayEquals(new int[] { 0, 4 }, filter.select(data.size()));
+		assertTrue(filter.anyExcludeMatches(1));
+		assertFalse(filter.allIncludesMatch(2));
+		// the encoded group column gives the same results as the source text
+		assertTrue(data.getColumn("Group").getDictionary() != null);
+		FilterPredicate include = FilterPredicate.compile(config, config.getIncludeFilters().get(0));
+		for (int row = 0; row < data.size(); row++) {
+			assertEquals(include.matches(data.getString(row, 3)), filter.allIncludesMatch(row));
+		}
+	}
+
+	@Test
+	public void testIndexedFilters() {
+		ComparatorConfig config = createConfig("[[\"Group\", \"=\", \"NAM\"]]", "[[\"Close Date\", \"<\", \"$START_DATE\"], [\"Valid\", \"=\", \"0\"]]");
+		Dataset data = Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config));
+		int[] expected = RowFilter.compile(config, data).select(data.size());
+		for (String column : CompUtils.getFilterColumns(config)) {
+			assertTrue(data.getColumn(column).getIndex() != null);
+		}
+		assertArrayEquals(expected, RowFilter.compile(config, data).select(data.size()));
+		assertEquals(4, data.getColumn("Group").getIndex().get("NAM").cardinality());
+		assertEquals(0, data.getColumn("Group").getIndex().get("LATAM").cardinality());
+	}
+
+	@Test
+	public void testDateOperators() {
+		ComparatorConfig config = createConfig("[]", "[]");
+		FilterPredicate before = FilterPredicate.compile(config, new String[] { "Close Date", "<=", "$END_DATE" });
+		assertTrue(before.matches("2016-06-09"));
+		assertTrue(before.matches("6/01/2016"));
+		assertFalse(before.matches("2016-06-10"));
+		assertFalse(before.matches(""));
+		FilterPredicate unknown = FilterPredicate.compile(config, new String[] { "Close Date", ">", "$OTHER_DATE" });
+		assertFalse(unknown.matches("2016-06-01"));
+	}
+
+	@Test
+	public void testSetAndPatternOperators() {
+		ComparatorConfig config = createConfig("[[\"Tenant ID\", \"in\", [\"t1\", \"t3\", \"t4\", \"t6\"]], [\"Tenant ID\", \"matches\", \"t[1-4]\"]]",
+				"[[\"Group\", \"notIn\", [\"NAM\"]], [\"Tenant ID\", \"containsAny\", [\"x\", \"4\"]]]");
+		assertEquals(4, config.getIncludeFilters().get(0).length - 2);
+		Dataset data = Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config));
+		assertArrayEquals(new int[] { 0 }, RowFilter.compile(config, data).select(data.size()));
+		data.getColumn("Group").getIndex();
+		assertArrayEquals(new int[] { 0 }, RowFilter.compile(config, data).select(data.size()));
+	}
+
+	@Test
+	public void testMultiConfigFilters() {
+		ComparatorConfig first = createConfig("[[\"Group\", \"=\", \"NAM\"]]", "[[\"Close Date\", \"<\", \"$START_DATE\"], [\"Valid\", \"=\", \"0\"]]");
+		ComparatorConfig second = createConfig("[]", "[[\"Valid\", \"=\", \"0\"], [\"Close Date\", \"<\", \"2016-05-10\"], [\"Group\", \"in\", [\"ROW\"]]]");
+		Dataset data = Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(first));
+		ExecutionPlan firstPlan = ExecutionPlan.compile(first, HEADERS, "Close Date");
+		ExecutionPlan secondPlan = ExecutionPlan.compile(second, HEADERS, "Close Date");
+		Dataset projected = data.project(firstPlan.getProjection());
+		MultiRowFilter filter = MultiRowFilter.compile(Lists.newArrayList(firstPlan, secondPlan), Lists.newArrayList(projected, projected));
+		assertEquals(4, filter.getDistinctCount());
+		List<BitSet> rows = filter.selectRows(data.size());
+		assertEquals(RowFilter.compile(first, data).selectRows(data.size()), rows.get(0));
+		assertEquals(RowFilter.compile(second, data).selectRows(data.size()), rows.get(1));
+		assertArrayEquals(new int[] { 0, 4 }, rows.get(1).stream().toArray());
+	}
+
+	@Test
+	public void testFilterImpact() {
+		ComparatorConfig config = createConfig("[[\"Group\", \"=\", \"NAM\"]]", "[[\"Valid\", \"in\", [\"0\"]], [\"Tenant ID\", \"in\", [\"t3\", \"t4\"]]]");
+		Dataset data = Dataset.of(HEADERS, createRows(), CompUtils.getColumnTypes(config));
+		Pair<Dataset, List<FilterImpact>> filtered = CompUtils.filterColumnsWithImpact(config, data, "Tenant ID");
+		assertEquals(CompUtils.filterColumns(config, data).size(), filtered.getLeft().size());
+		List<FilterImpact> impacts = filtered.getRight();
+		assertEquals(3, impacts.size());
+		assertEquals("include: 'Group' = 'NAM'", impacts.get(0).getFilter());
+		assertEquals(1, impacts.get(0).getRowsAlone());
+		assertEquals(1, impacts.get(0).getRowsTogether());
+		assertEquals(Sets.newHashSet("t6"), impacts.get(0).getTenantsAlone());
+		assertEquals(Sets.newHashSet("t3"), impacts.get(0).getTenantsTogether());
+		assertEquals(0, impacts.get(1).getRowsAlone());
+		assertEquals(Sets.newHashSet("t4"), impacts.get(1).getTenantsTogether());
+		assertEquals(2, impacts.get(2).getRowsTogether());
+		assertEquals(Sets.newHashSet("t3", "t4"), impacts.get(2).getTenantsTogether());
+	}
+
+	@Test
+	public void testMultiPatternMatcher() {
+		MultiPatternMatcher matcher = new MultiPatternMatcher(Lists.newArrayList("renewal", "migration", "customer", "ratio"), true);
+		assertTrue(matcher.containsAny("Customer Renewal"));
+		assertTrue(matcher.containsAny("New - MIGRATION"));
+		assertTrue(matcher.containsAny("migratio ratio"));
+		assertTrue(matcher.containsAny("custocustomer"));
+		assertFalse(matcher.containsAny("New Business"));
+		assertFalse(matcher.containsAny("migrati"));
+		assertFalse(matcher.containsAny(""));
+		assertFalse(new MultiPatternMatcher(Lists.newArrayList("Renewal"), false).containsAny("renewal"));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnsupportedOperator() {
+		FilterPredicate.compile(createConfig("[]", "[]"), new String[] { "Group", "~", "NAM" });
+	}
+
+	private ComparatorConfig createConfig(String include, String exclude) {
+		String json = "{ \"cols\": [\"Tenant ID\", \"Valid\", \"Group\"], \"coltypes\": { \"Valid\": \"integer\" },"
+				+ " \"filters\": { \"include\": " + include + ", \"exclude\": " + exclude + " } }";
+		JsonReader reader = Json.createReader(new StringReader(json));
+		ComparatorConfig config = new ComparatorConfig(reader.readObject());
+		reader.close();
+		CompUtils.addDatesToConfig(config, "2016-05-10", "2016-06-09");
+		return config;
+	}
+
+	private List<String[]> createRows() {
+		List<String[]> rows = Lists.newArrayList();
+		rows.add(new String[] { "t1", "1", "5/18/2016", "NAM" });
+		rows.add(new String[] { "t2", "1", "5/01/2016", "NAM" });
+		rows.add(new String[] { "t3", "1", "5/18/2016", "ROW" });
+		rows.add(new String[] { "t4", "0", "5/20/2016", "NAM" });
+		rows.add(new String[] { "t5", "1", "", "NAM" });
+		rows.add(new String[] { "t6", "1", "5/19/2016", "ROW" });
+		return rows;
+	}
+
+}